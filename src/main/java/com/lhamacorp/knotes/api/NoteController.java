@@ -1,24 +1,51 @@
 package com.lhamacorp.knotes.api;
 
+import com.lhamacorp.knotes.api.dto.NoteBatchRequest;
 import com.lhamacorp.knotes.api.dto.NoteMetadata;
 import com.lhamacorp.knotes.api.dto.NoteRequest;
 import com.lhamacorp.knotes.api.dto.NoteResponse;
 import com.lhamacorp.knotes.api.dto.NoteUpdateRequest;
+import com.lhamacorp.knotes.api.dto.StreamingMetadataResponse;
+import com.lhamacorp.knotes.api.dto.StreamingNoteResponse;
 import com.lhamacorp.knotes.context.UserContext;
 import com.lhamacorp.knotes.context.UserContextHolder;
 import com.lhamacorp.knotes.domain.EncryptionMode;
 import com.lhamacorp.knotes.domain.Note;
+import com.lhamacorp.knotes.exception.ConflictException;
 import com.lhamacorp.knotes.service.NoteService;
+import com.lhamacorp.knotes.util.CompressionUtils;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static com.lhamacorp.knotes.context.UserContextHolder.isAuthenticated;
 import static com.lhamacorp.knotes.domain.EncryptionMode.PRIVATE;
 import static com.lhamacorp.knotes.domain.EncryptionMode.PUBLIC;
 import static com.lhamacorp.knotes.domain.Note.ANONYMOUS;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.springframework.http.HttpHeaders.ACCEPT_ENCODING;
+import static org.springframework.http.HttpHeaders.CONTENT_ENCODING;
+import static org.springframework.http.HttpHeaders.IF_MATCH;
+import static org.springframework.http.HttpHeaders.IF_MODIFIED_SINCE;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.http.HttpHeaders.VARY;
+import static org.springframework.http.HttpStatus.CONFLICT;
 import static org.springframework.http.HttpStatus.FORBIDDEN;
+import static org.springframework.http.HttpStatus.PRECONDITION_FAILED;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
 import static org.springframework.http.ResponseEntity.badRequest;
 import static org.springframework.http.ResponseEntity.ok;
 
@@ -29,46 +56,205 @@ public class NoteController {
 
     private final NoteService noteService;
 
+    private static final MediaType TEXT_PLAIN_UTF8 = new MediaType("text", "plain", UTF_8);
+    private static final int STREAMING_THRESHOLD_BYTES = 64 * 1024;
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String NEXT_CURSOR = "Next-Cursor";
+    private static final int MAX_BATCH_SIZE = 100;
 
     public NoteController(NoteService noteService) {
         this.noteService = noteService;
     }
 
+    /**
+     * Lists the current user's note ids. Without {@code cursor} and {@code limit} every id is
+     * returned, as before pagination existed. With either of them a page is returned, and when
+     * the page is full the {@code Next-Cursor} header holds the cursor for the next page.
+     */
     @GetMapping
-    public ResponseEntity<List<String>> findByUserId() {
-        return ok(noteService.findAll());
+    public ResponseEntity<List<String>> findByUserId(@RequestParam(required = false) String cursor,
+                                                     @RequestParam(required = false) Integer limit) {
+        if (cursor == null && limit == null) {
+            return ok(noteService.findAll());
+        }
+
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            return badRequest().build();
+        }
+
+        List<String> ids = noteService.findAll(cursor, pageSize);
+        ResponseEntity.BodyBuilder response = ok();
+
+        if (ids.size() == pageSize) {
+            response.header(NEXT_CURSOR, ids.getLast());
+        }
+
+        return response.body(ids);
+    }
+
+    /**
+     * Streams the metadata of the current user's notes, one page at a time. When the page
+     * is full, the body ends with the cursor for the next page.
+     */
+    @GetMapping("/metadata")
+    public ResponseEntity<StreamingMetadataResponse> findAllMetadata(@RequestParam(required = false) String cursor,
+                                                                     @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit,
+                                                                     @RequestParam(required = false) Instant modifiedSince) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return badRequest().build();
+        }
+
+        // the user is resolved here, on the request thread, the query only runs once the body is written
+        Supplier<Stream<NoteMetadata>> metadata = noteService.streamMetadata(cursor, limit, modifiedSince);
+        return ok().contentType(APPLICATION_JSON).body(new StreamingMetadataResponse(metadata, limit));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<NoteResponse> findById(@PathVariable String id,
-                                                 @RequestParam(required = false) String password) {
-        UserContext user = UserContextHolder.get();
-        Note note = noteService.findById(id);
+    public ResponseEntity<?> findById(@PathVariable String id,
+                                      @RequestParam(required = false) String password,
+                                      WebRequest request) {
+        // PUBLIC notes are served without resolving the caller
+        Supplier<String> userId = () -> UserContextHolder.get().id();
+
+        // conditional requests are answered from the metadata alone, so an unchanged note is never loaded or decoded
+        Note note = null;
+        NoteMetadata metadata;
+        if (isConditional(request)) {
+            metadata = noteService.findMetadataById(id);
+        } else {
+            note = noteService.findById(id);
+            metadata = NoteMetadata.from(note);
+        }
+
+        if (canAccess(metadata.encryptionMode(), metadata.createdBy(), userId)
+                && request.checkNotModified(metadata.etag(), metadata.lastModified())) {
+            return null;
+        }
 
-        if (!canAccess(note, user.id(), password)) {
+        if (note == null) {
+            note = noteService.findById(id);
+        }
+
+        if (!canAccess(note, userId, password)) {
             return ResponseEntity.status(FORBIDDEN).build();
         }
 
+        if (isLarge(note)) {
+            InputStream content = switch (note.encryptionMode()) {
+                case PRIVATE -> note.contentStream(userId.get(), null);
+                case PASSWORD_SHARED -> note.contentStream(null, password);
+                case PUBLIC -> note.contentStream(null, null);
+            };
+            return ok().contentType(APPLICATION_JSON).body(new StreamingNoteResponse(note, content));
+        }
+
         return switch (note.encryptionMode()) {
-            case PRIVATE -> ResponseEntity.ok(NoteResponse.fromPrivate(note, user.id()));
+            case PRIVATE -> ResponseEntity.ok(NoteResponse.fromPrivate(note, userId.get()));
             case PASSWORD_SHARED -> ResponseEntity.ok(NoteResponse.fromPasswordShared(note, password));
-            case PUBLIC -> ResponseEntity.ok(NoteResponse.from(note));
+            case PUBLIC -> ResponseEntity.ok(NoteResponse.from(note, noteService.publicContent(note)));
         };
     }
 
+    /**
+     * Loads up to {@value #MAX_BATCH_SIZE} notes in one call. Notes are read with a single query
+     * and decoded in parallel; notes that do not exist or that the caller cannot access are
+     * left out of the response.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<List<NoteResponse>> findAllById(@RequestBody NoteBatchRequest request) {
+        if (request.ids() == null || request.ids().isEmpty() || request.ids().size() > MAX_BATCH_SIZE) {
+            return badRequest().build();
+        }
+
+        Supplier<String> currentUserId = () -> UserContextHolder.get().id();
+        List<Note> notes = noteService.findAllById(new LinkedHashSet<>(request.ids())).stream()
+                .filter(note -> canAccess(note, currentUserId, null))
+                .toList();
+
+        // resolved here, the decoding threads do not see the request's user context
+        String userId = notes.stream().anyMatch(note -> note.encryptionMode() == PRIVATE) ? currentUserId.get() : null;
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<NoteResponse>> responses = notes.stream()
+                    .map(note -> executor.submit(() -> switch (note.encryptionMode()) {
+                        case PRIVATE -> NoteResponse.fromPrivate(note, userId);
+                        case PUBLIC -> NoteResponse.from(note, noteService.publicContent(note));
+                        default -> throw new IllegalStateException("PASSWORD_SHARED not supported in this endpoint");
+                    }))
+                    .toList();
+
+            return ok(responses.stream().map(NoteController::join).toList());
+        }
+    }
+
+    /**
+     * Raw read mode: returns only the note content as plain text.
+     * PUBLIC notes are stored as a GZIP stream, so when the client accepts gzip
+     * the stored bytes are written as-is with {@code Content-Encoding: gzip}.
+     */
+    @GetMapping(value = "/{id}", params = "raw")
+    public ResponseEntity<byte[]> findRawById(@PathVariable String id,
+                                              @RequestParam(required = false) String password,
+                                              @RequestHeader(value = ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        Supplier<String> userId = () -> UserContextHolder.get().id();
+        Note note = noteService.findById(id);
+
+        if (!canAccess(note, userId, password)) {
+            return ResponseEntity.status(FORBIDDEN).build();
+        }
+
+        ResponseEntity.BodyBuilder response = ok()
+                .contentType(TEXT_PLAIN_UTF8)
+                .header(VARY, ACCEPT_ENCODING);
+
+        byte[] stored = note.compressedData() != null ? note.compressedData().getData() : null;
+        if (note.encryptionMode() == PUBLIC && acceptsGzip(acceptEncoding) && CompressionUtils.isGzip(stored)) {
+            return response.header(CONTENT_ENCODING, "gzip").body(stored);
+        }
+
+        String content = switch (note.encryptionMode()) {
+            case PRIVATE -> note.content(userId.get(), null);
+            case PASSWORD_SHARED -> note.content(null, password);
+            case PUBLIC -> noteService.publicContent(note);
+        };
+
+        return response.body(content != null ? content.getBytes(UTF_8) : new byte[0]);
+    }
+
     @GetMapping("{id}/metadata")
-    public ResponseEntity<NoteMetadata> getMetadata(@PathVariable String id) {
+    public ResponseEntity<NoteMetadata> getMetadata(@PathVariable String id, WebRequest request) {
         NoteMetadata metadata = noteService.findMetadataById(id);
+
+        if (request.checkNotModified(metadata.etag(), metadata.lastModified())) {
+            return null;
+        }
+
         return ok().body(metadata);
     }
 
+    /**
+     * Updates a note. With {@code If-Match} set to the note's ETag the update only applies while
+     * the note is unchanged; a stale write gets 409 with the current ETag and version. A tag is
+     * compared in full, so one that names a version but not its exact revision gets 412.
+     */
     @PutMapping("{id}")
     public ResponseEntity<NoteResponse> update(@PathVariable String id,
                                                @RequestBody NoteUpdateRequest request,
-                                               @RequestParam(required = false) String password) {
+                                               @RequestParam(required = false) String password,
+                                               @RequestHeader(value = IF_MATCH, required = false) String ifMatch) {
         UserContext user = UserContextHolder.get();
         String userId = user.id();
 
+        Long expectedVersion = null;
+        if (ifMatch != null && !ifMatch.trim().equals("*")) {
+            expectedVersion = NoteMetadata.versionOf(ifMatch);
+            if (expectedVersion == null || !matchesRevision(id, ifMatch.trim(), expectedVersion)) {
+                return ResponseEntity.status(PRECONDITION_FAILED).build();
+            }
+        }
+
         if (ANONYMOUS.equals(userId) && request.encryptionMode() != null
                 && !request.encryptionMode().equals("PUBLIC")) {
             return badRequest().build();
@@ -83,16 +269,35 @@ public class NoteController {
             }
         }
 
-        Note updatedNote = noteService.update(id, request.content(), mode, password);
+        Note updatedNote = noteService.update(id, request.content(), mode, password, expectedVersion);
         EncryptionMode finalMode = updatedNote.encryptionMode() != null ? updatedNote.encryptionMode() : PUBLIC;
+        ResponseEntity.BodyBuilder response = ok().eTag(NoteMetadata.from(updatedNote).etag());
 
         return switch (finalMode) {
-            case PRIVATE -> ok().body(NoteResponse.fromPrivate(updatedNote, userId));
-            case PASSWORD_SHARED -> ok().body(NoteResponse.fromPasswordShared(updatedNote, password));
-            case PUBLIC -> ok().body(NoteResponse.from(updatedNote));
+            case PRIVATE -> response.body(NoteResponse.fromPrivate(updatedNote, userId));
+            case PASSWORD_SHARED -> response.body(NoteResponse.fromPasswordShared(updatedNote, password));
+            case PUBLIC -> response.body(NoteResponse.from(updatedNote));
         };
     }
 
+    /**
+     * Strong comparison of an {@code If-Match} tag against the (usually cached) metadata. Only a
+     * tag naming the current version is compared; tags of other versions are left to the
+     * conditional write, which answers 409 with the current ETag.
+     */
+    private boolean matchesRevision(String id, String tag, long version) {
+        NoteMetadata current = noteService.findMetadataById(id);
+        return current.version() != version || current.etag().equals(tag);
+    }
+
+    @ExceptionHandler(ConflictException.class)
+    public ResponseEntity<Map<String, Object>> conflict(ConflictException e) {
+        NoteMetadata current = e.current();
+        return ResponseEntity.status(CONFLICT)
+                .eTag(current.etag())
+                .body(Map.of("message", e.getMessage(), "version", current.version()));
+    }
+
     @PostMapping
     public ResponseEntity<NoteResponse> save(@RequestBody NoteRequest request) {
         String userId = isAuthenticated() ? UserContextHolder.get().id() : ANONYMOUS;
@@ -116,12 +321,56 @@ public class NoteController {
         return ok().build();
     }
 
-    private boolean canAccess(Note note, String userId, String password) {
-        return switch (note.encryptionMode()) {
+    private boolean canAccess(Note note, Supplier<String> userId, String password) {
+        return canAccess(note.encryptionMode(), note.createdBy(), userId);
+    }
+
+    /**
+     * @param userId resolved only when the answer depends on who the caller is
+     */
+    private static boolean canAccess(EncryptionMode mode, String createdBy, Supplier<String> userId) {
+        return switch (mode) {
             case PUBLIC -> true;
-            case PRIVATE -> ANONYMOUS.equals(note.createdBy()) || userId.equals(note.createdBy());
+            case PRIVATE -> ANONYMOUS.equals(createdBy) || userId.get().equals(createdBy);
             default -> false;
         };
     }
 
+    private static <T> T join(Future<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean isLarge(Note note) {
+        return note.compressedData() != null && note.compressedData().length() > STREAMING_THRESHOLD_BYTES;
+    }
+
+    private static boolean isConditional(WebRequest request) {
+        return request.getHeader(IF_NONE_MATCH) != null || request.getHeader(IF_MODIFIED_SINCE) != null;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if ("gzip".equalsIgnoreCase(parts[0].trim())) {
+                return parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+
+        return false;
+    }
+
 }
@@ -0,0 +1,6 @@
+package com.lhamacorp.knotes.api.dto;
+
+import java.util.List;
+
+public record NoteBatchRequest(List<String> ids) {
+}
@@ -1,5 +1,6 @@
 package com.lhamacorp.knotes.api.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.lhamacorp.knotes.domain.EncryptionMode;
 import com.lhamacorp.knotes.domain.Note;
 
@@ -9,15 +10,18 @@ import java.time.Instant;
  * Metadata-only response DTO for content information without content.
  *
  * <p>Provides lightweight content information including encryption status
- * without the overhead of decrypting content. Useful for list views
- * and metadata operations.</p>
+ * without the overhead of decrypting content. Useful for list views,
+ * metadata operations and validating conditional requests.</p>
  */
 public record NoteMetadata(
         String id,
         Instant createdAt,
         Instant modifiedAt,
         EncryptionMode encryptionMode,
-        Boolean requiresPassword
+        Boolean requiresPassword,
+        Long version,
+        @JsonIgnore String createdBy,
+        @JsonIgnore String contentHash
 ) {
 
     /**
@@ -32,7 +36,59 @@ public record NoteMetadata(
             note.createdAt(),
             note.modifiedAt(),
             note.encryptionMode() != null ? note.encryptionMode() : EncryptionMode.PUBLIC,
-            note.requiresPassword() != null ? note.requiresPassword() : false
+            note.requiresPassword() != null ? note.requiresPassword() : false,
+            note.version() != null ? note.version() : 0L,
+            note.createdBy(),
+            note.contentHash()
         );
     }
-}
\ No newline at end of file
+
+    /**
+     * Strong entity tag for the current revision of the note, built from the version, the
+     * modification time and the hash of the stored bytes. Notes written before the hash
+     * existed leave it out.
+     *
+     * @return the quoted entity tag
+     */
+    public String etag() {
+        String revision = version + "-" + lastModified();
+        return contentHash != null
+                ? "\"" + revision + "-" + contentHash + "\""
+                : "\"" + revision + "\"";
+    }
+
+    /**
+     * Extracts the version from an entity tag produced by {@link #etag()}.
+     *
+     * @return the version, or {@code null} when the tag is absent, {@code *} or not one of ours
+     */
+    public static Long versionOf(String etag) {
+        if (etag == null) {
+            return null;
+        }
+
+        String tag = etag.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        tag = tag.replace("\"", "");
+
+        int separator = tag.indexOf('-');
+        if (separator <= 0) {
+            return null;
+        }
+
+        try {
+            return Long.parseLong(tag.substring(0, separator));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the modification time in epoch millis, or -1 when unknown
+     */
+    public long lastModified() {
+        return modifiedAt != null ? modifiedAt.toEpochMilli() : -1;
+    }
+}
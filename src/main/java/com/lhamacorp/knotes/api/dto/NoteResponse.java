@@ -16,9 +16,13 @@ public record NoteResponse(
 ) {
 
     public static NoteResponse from(Note note) {
+        return from(note, note.content());
+    }
+
+    public static NoteResponse from(Note note, String content) {
         return new NoteResponse(
                 note.id(),
-                note.content(),
+                content,
                 note.createdBy(),
                 note.createdAt(),
                 note.modifiedAt(),
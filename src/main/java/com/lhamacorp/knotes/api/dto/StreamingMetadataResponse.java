@@ -0,0 +1,68 @@
+package com.lhamacorp.knotes.api.dto;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Streams a page of {@link NoteMetadata} as the entries are read from Mongo, as
+ * {@code {"notes": [...], "nextCursor": ...}}.
+ *
+ * <p>Each note has the same shape as the single-note metadata response. The page size is only
+ * known once the last entry is written, so the cursor for the next page follows the notes; it
+ * is {@code null} when the page is not full. The Mongo cursor is opened when the body is
+ * written and closed right after, so nothing is held open if it never is.</p>
+ */
+public class StreamingMetadataResponse implements StreamingResponseBody {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final Supplier<Stream<NoteMetadata>> query;
+    private final int limit;
+
+    public StreamingMetadataResponse(Supplier<Stream<NoteMetadata>> query, int limit) {
+        this.query = query;
+        this.limit = limit;
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        try (Stream<NoteMetadata> metadata = query.get();
+             JsonGenerator json = JSON.createGenerator(outputStream, JsonEncoding.UTF8)) {
+
+            int count = 0;
+            String last = null;
+
+            json.writeStartObject();
+            json.writeArrayFieldStart("notes");
+            for (Iterator<NoteMetadata> it = metadata.iterator(); it.hasNext(); ) {
+                NoteMetadata entry = it.next();
+                count++;
+                last = entry.id();
+                json.writeStartObject();
+                json.writeStringField("id", entry.id());
+                writeInstant(json, "createdAt", entry.createdAt());
+                writeInstant(json, "modifiedAt", entry.modifiedAt());
+                json.writeStringField("encryptionMode", entry.encryptionMode().name());
+                json.writeBooleanField("requiresPassword", entry.requiresPassword());
+                json.writeNumberField("version", entry.version());
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeStringField("nextCursor", count == limit ? last : null);
+            json.writeEndObject();
+        }
+    }
+
+    private static void writeInstant(JsonGenerator json, String field, Instant value) throws IOException {
+        json.writeStringField(field, value != null ? value.toString() : null);
+    }
+}
@@ -0,0 +1,59 @@
+package com.lhamacorp.knotes.api.dto;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.lhamacorp.knotes.domain.EncryptionMode;
+import com.lhamacorp.knotes.domain.Note;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.time.Instant;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Streaming variant of {@link NoteResponse} for large notes.
+ *
+ * <p>Writes the same JSON document, but the content is read from an incrementally
+ * decompressed stream and escaped in chunks straight to the response, so memory per
+ * request stays bounded regardless of the note size.</p>
+ */
+public class StreamingNoteResponse implements StreamingResponseBody {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final Note note;
+    private final InputStream content;
+
+    public StreamingNoteResponse(Note note, InputStream content) {
+        this.note = note;
+        this.content = content;
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        try (Reader reader = new InputStreamReader(content, UTF_8);
+             JsonGenerator json = JSON.createGenerator(outputStream, JsonEncoding.UTF8)) {
+
+            json.writeStartObject();
+            json.writeStringField("id", note.id());
+            json.writeFieldName("content");
+            json.writeString(reader, -1);
+            json.writeStringField("createdBy", note.createdBy());
+            writeInstant(json, "createdAt", note.createdAt());
+            writeInstant(json, "modifiedAt", note.modifiedAt());
+            json.writeStringField("encryptionMode", (note.encryptionMode() != null ? note.encryptionMode() : EncryptionMode.PUBLIC).name());
+            json.writeBooleanField("requiresPassword", note.requiresPassword() != null ? note.requiresPassword() : false);
+            json.writeEndObject();
+        }
+    }
+
+    private static void writeInstant(JsonGenerator json, String field, Instant value) throws IOException {
+        json.writeStringField(field, value != null ? value.toString() : null);
+    }
+}
@@ -1,11 +1,16 @@
 package com.lhamacorp.knotes.client;
 
+import com.lhamacorp.knotes.exception.ServiceUnavailableException;
+import com.lhamacorp.knotes.exception.TokenRejectedException;
 import com.lhamacorp.knotes.exception.UnauthorizedException;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.http.*;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.List;
@@ -19,30 +24,57 @@ public class AuthClient {
     private final RestTemplate rest;
     private final String baseUrl;
 
+    private static final String REQUESTS = "knotes.auth.requests";
+
     public AuthClient(RestTemplate rest, @Value("${auth.api}") String baseUrl) {
         this.rest = rest;
         this.baseUrl = baseUrl;
     }
 
-    @Cacheable(value = "current", key = "#token")
+    /**
+     * Asks the auth API who the token belongs to. Uncached, see {@link CurrentUserCache}.
+     *
+     * @throws TokenRejectedException when the auth API answers 401 or 403
+     * @throws UnauthorizedException when the auth API answers with any other 4xx
+     * @throws ServiceUnavailableException when the auth API times out, fails or gives no usable answer
+     */
     public CurrentUser current(String token) {
         HttpHeaders headers = new HttpHeaders();
         headers.add("Authorization", token);
 
         HttpEntity<Map<String, String>> entity = new HttpEntity<>(null, headers);
+        Timer.Sample sample = Timer.start();
+        String outcome = "error";
 
         try {
             ResponseEntity<CurrentUser> response = rest.exchange(baseUrl + "/users/current", GET, entity, CurrentUser.class);
 
             if (response.getStatusCode() == HttpStatus.OK) {
+                outcome = "success";
                 return response.getBody();
             } else {
-                throw new UnauthorizedException("Unexpected response status: " + response.getStatusCode());
+                outcome = "unexpected";
+                throw new ServiceUnavailableException("Unexpected response status: " + response.getStatusCode());
             }
         } catch (HttpClientErrorException e) {
-            throw new UnauthorizedException("Error: " + e.getStatusCode() + " - " + e.getResponseBodyAsString());
+            outcome = "rejected";
+            String message = "Error: " + e.getStatusCode() + " - " + e.getResponseBodyAsString();
+            if (e.getStatusCode() == HttpStatus.UNAUTHORIZED || e.getStatusCode() == HttpStatus.FORBIDDEN) {
+                throw new TokenRejectedException(message);
+            }
+            throw new UnauthorizedException(message);
+        } catch (HttpServerErrorException e) {
+            outcome = "unavailable";
+            throw new ServiceUnavailableException("Error: " + e.getStatusCode());
+        } catch (ResourceAccessException e) {
+            outcome = "timeout";
+            throw new ServiceUnavailableException("An error occurred: " + e.getMessage());
+        } catch (UnauthorizedException | ServiceUnavailableException e) {
+            throw e;
         } catch (Exception e) {
-            throw new UnauthorizedException("An error occurred: " + e.getMessage());
+            throw new ServiceUnavailableException("An error occurred: " + e.getMessage());
+        } finally {
+            sample.stop(Metrics.timer(REQUESTS, "outcome", outcome));
         }
     }
 
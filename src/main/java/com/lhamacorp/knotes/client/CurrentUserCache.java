@@ -0,0 +1,193 @@
+package com.lhamacorp.knotes.client;
+
+import com.lhamacorp.knotes.client.AuthClient.CurrentUser;
+import com.lhamacorp.knotes.exception.ServiceUnavailableException;
+import com.lhamacorp.knotes.exception.TokenRejectedException;
+import com.lhamacorp.knotes.exception.UnauthorizedException;
+import com.lhamacorp.knotes.util.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.lhamacorp.knotes.config.CacheConfig.CURRENT;
+import static com.lhamacorp.knotes.config.CacheConfig.REJECTED;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Caches who a token belongs to in front of {@link AuthClient}.
+ *
+ * <p>Entries are keyed by the SHA-256 of the token, so raw credentials are never held as cache
+ * keys. Concurrent lookups of the same token share one auth API call. Tokens the auth API
+ * rejected are remembered in the short-lived {@code rejected} cache, so a client retrying with
+ * a bad token does not reach the auth API on every request; timeouts and other failures are
+ * not remembered.</p>
+ *
+ * <p>An identity is fresh for {@code auth.cache.ttl}. For a further {@code auth.cache.grace} it is
+ * still served, while it is revalidated in the background; a revalidation that fails for any
+ * reason other than a rejection keeps the old identity. Calls to the auth API go through a
+ * circuit breaker, so while it is down requests fail fast: tokens with a cached identity keep
+ * working for the grace period, unknown tokens get {@link ServiceUnavailableException}.</p>
+ */
+@Component
+public class CurrentUserCache {
+
+    private static final Logger log = getLogger(CurrentUserCache.class);
+
+    private final AuthClient authClient;
+    private final Cache current;
+    private final Cache rejected;
+    private final Duration ttl;
+    private final CircuitBreaker breaker;
+    private final Clock clock;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final Counter rejectedHits = Metrics.counter("knotes.auth.rejected.hits");
+    private final Counter staleServed = Metrics.counter("knotes.auth.stale.served");
+
+    private static final String REFRESH = "knotes.auth.refresh";
+
+    @Autowired
+    public CurrentUserCache(AuthClient authClient,
+                            CacheManager cacheManager,
+                            @Value("${auth.cache.ttl:PT5M}") Duration ttl,
+                            @Value("${auth.breaker.failure-threshold:5}") int failureThreshold,
+                            @Value("${auth.breaker.open-duration:PT30S}") Duration openDuration) {
+        this(authClient, cacheManager, ttl, new CircuitBreaker(failureThreshold, openDuration, Clock.systemUTC()), Clock.systemUTC());
+    }
+
+    CurrentUserCache(AuthClient authClient, CacheManager cacheManager, Duration ttl, CircuitBreaker breaker, Clock clock) {
+        this.authClient = authClient;
+        this.current = cacheManager.getCache(CURRENT);
+        this.rejected = cacheManager.getCache(REJECTED);
+        this.ttl = ttl;
+        this.breaker = breaker;
+        this.clock = clock;
+
+        Metrics.gauge("knotes.auth.breaker.state", breaker, b -> b.state().ordinal());
+        Metrics.gauge("knotes.auth.refresh.inflight", refreshing, Set::size);
+    }
+
+    public CircuitBreaker breaker() {
+        return breaker;
+    }
+
+    /**
+     * @throws UnauthorizedException when the token is not valid
+     * @throws ServiceUnavailableException when the auth API is down and the token is not cached
+     */
+    public CurrentUser get(String token) {
+        String key = keyOf(token);
+        checkNotRejected(key);
+
+        Entry entry = current.get(key, Entry.class);
+        if (entry != null) {
+            if (clock.instant().isAfter(entry.validatedAt().plus(ttl))) {
+                staleServed.increment();
+                refreshAsync(key, token);
+            }
+            return entry.user();
+        }
+
+        try {
+            return current.get(key, () -> load(key, token)).user();
+        } catch (Cache.ValueRetrievalException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private Entry load(String key, String token) {
+        // callers queued behind a load that was rejected see its verdict instead of retrying
+        checkNotRejected(key);
+        return new Entry(call(key, token), clock.instant());
+    }
+
+    private void refreshAsync(String key, String token) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+
+        Thread.ofVirtual().name("auth-refresh").start(() -> {
+            Timer.Sample sample = Timer.start();
+            String outcome = "error";
+
+            try {
+                current.put(key, new Entry(call(key, token), clock.instant()));
+                outcome = "success";
+            } catch (TokenRejectedException e) {
+                current.evict(key);
+                outcome = "rejected";
+            } catch (RuntimeException e) {
+                // keep serving the stale identity until its grace period ends
+                log.debug("Failed to revalidate token: {}", e.getMessage());
+            } finally {
+                refreshing.remove(key);
+                sample.stop(Metrics.timer(REFRESH, "outcome", outcome));
+            }
+        });
+    }
+
+    private CurrentUser call(String key, String token) {
+        if (!breaker.tryAcquire()) {
+            throw new ServiceUnavailableException("Auth API unavailable");
+        }
+
+        try {
+            CurrentUser user = authClient.current(token);
+            breaker.onSuccess();
+            return user;
+        } catch (TokenRejectedException e) {
+            // the auth API answered, only the token was bad
+            breaker.onSuccess();
+            rejected.put(key, e.getMessage());
+            throw e;
+        } catch (UnauthorizedException e) {
+            breaker.onSuccess();
+            throw e;
+        } catch (RuntimeException e) {
+            breaker.onFailure();
+            throw e;
+        }
+    }
+
+    private void checkNotRejected(String key) {
+        String reason = rejected.get(key, String.class);
+        if (reason != null) {
+            rejectedHits.increment();
+            throw new TokenRejectedException(reason);
+        }
+    }
+
+    static String keyOf(String token) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(token.getBytes(UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * A user together with when the auth API last confirmed the token.
+     */
+    record Entry(CurrentUser user, Instant validatedAt) {
+    }
+
+}
@@ -0,0 +1,262 @@
+package com.lhamacorp.knotes.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lhamacorp.knotes.client.AuthClient.CurrentUser;
+import com.lhamacorp.knotes.exception.UnauthorizedException;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.RSAPublicKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Optional local verification of RS256-signed JWTs against the auth API's key set.
+ *
+ * <p>When enabled, signed tokens are verified here and turned into a {@link CurrentUser} from
+ * their claims ({@code sub}, {@code username}, {@code roles}), so they never reach the remote
+ * auth call. Tokens this class cannot judge (opaque tokens, other algorithms, tokens without an
+ * expiry or signed by a key that is not in the key set) yield an empty result and are left to
+ * the remote call. Tokens that are signed by a known key but invalid are rejected.</p>
+ *
+ * <p>The key set is fetched on startup, refreshed periodically, and refreshed early when a token
+ * names an unknown key, at most once per {@link #MIN_REFRESH_INTERVAL}. An early refresh runs in
+ * the background, so the token that triggered it goes to the remote call right away, and only
+ * one refresh runs at a time.</p>
+ */
+@Component
+public class JwtVerifier {
+
+    private static final Logger log = getLogger(JwtVerifier.class);
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final Base64.Decoder BASE64URL = Base64.getUrlDecoder();
+
+    private static final String ALGORITHM = "RS256";
+    private static final String BEARER = "Bearer ";
+    private static final Duration CLOCK_SKEW = Duration.ofSeconds(30);
+    private static final Duration MIN_REFRESH_INTERVAL = Duration.ofSeconds(30);
+    private static final String REFRESH_INTERVAL = "${auth.jwt.jwks-refresh:PT10M}";
+
+    private final RestTemplate rest;
+    private final boolean enabled;
+    private final String jwksUri;
+    private final String issuer;
+    private final String audience;
+
+    private volatile Map<String, PublicKey> keys = Map.of();
+    private volatile Instant lastRefresh = Instant.EPOCH;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    public JwtVerifier(RestTemplate rest,
+                       @Value("${auth.jwt.enabled:false}") boolean enabled,
+                       @Value("${auth.jwt.jwks-uri:}") String jwksUri,
+                       @Value("${auth.jwt.issuer:}") String issuer,
+                       @Value("${auth.jwt.audience:}") String audience) {
+        this.rest = rest;
+        this.enabled = enabled;
+        this.jwksUri = jwksUri;
+        this.issuer = issuer;
+        this.audience = audience;
+    }
+
+    /**
+     * @param authorization the raw {@code Authorization} header value
+     * @return the user, or empty when the token has to be checked by the auth API
+     * @throws UnauthorizedException when the token is signed by a known key but is not valid
+     */
+    public Optional<CurrentUser> verify(String authorization) {
+        if (!enabled || authorization == null) {
+            return Optional.empty();
+        }
+
+        String token = authorization.startsWith(BEARER) ? authorization.substring(BEARER.length()) : authorization;
+        String[] parts = token.split("\\.");
+        if (parts.length != 3) {
+            return Optional.empty();
+        }
+
+        JsonNode header = decode(parts[0]);
+        if (header == null || !ALGORITHM.equals(header.path("alg").asText())) {
+            return Optional.empty();
+        }
+
+        PublicKey key = key(header.path("kid").asText(null));
+        if (key == null) {
+            return Optional.empty();
+        }
+
+        JsonNode claims = decode(parts[1]);
+        if (claims == null || !claims.hasNonNull("exp")) {
+            return Optional.empty();
+        }
+
+        if (!signatureMatches(key, parts)) {
+            throw rejected("invalid signature");
+        }
+
+        validate(claims);
+        Metrics.counter("knotes.auth.local", "outcome", "verified").increment();
+
+        return Optional.of(new CurrentUser(
+                claims.path("sub").asText(),
+                claims.path("username").asText(claims.path("preferred_username").asText(null)),
+                roles(claims)));
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = REFRESH_INTERVAL)
+    public void refresh() {
+        if (!enabled || jwksUri.isBlank() || !refreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            fetch();
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    private void refreshAsync() {
+        if (Instant.now().isBefore(lastRefresh.plus(MIN_REFRESH_INTERVAL)) || !refreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        Thread.ofVirtual().name("jwks-refresh").start(() -> {
+            try {
+                fetch();
+            } finally {
+                refreshing.set(false);
+            }
+        });
+    }
+
+    private void fetch() {
+        lastRefresh = Instant.now();
+        try {
+            load(rest.getForObject(jwksUri, String.class));
+        } catch (RuntimeException e) {
+            // keep the current keys, tokens signed by unknown keys fall back to the auth API
+            log.warn("Failed to refresh JWKS from [{}]: {}", jwksUri, e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces the key set with the RSA signing keys of a JWKS document.
+     */
+    void load(String jwks) {
+        Map<String, PublicKey> loaded = new HashMap<>();
+
+        try {
+            KeyFactory factory = KeyFactory.getInstance("RSA");
+            for (JsonNode jwk : JSON.readTree(jwks).path("keys")) {
+                if (!"RSA".equals(jwk.path("kty").asText()) || "enc".equals(jwk.path("use").asText())) {
+                    continue;
+                }
+
+                BigInteger modulus = new BigInteger(1, BASE64URL.decode(jwk.path("n").asText()));
+                BigInteger exponent = new BigInteger(1, BASE64URL.decode(jwk.path("e").asText()));
+                loaded.put(jwk.path("kid").asText(""), factory.generatePublic(new RSAPublicKeySpec(modulus, exponent)));
+            }
+        } catch (IOException | GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid JWKS document", e);
+        }
+
+        keys = Map.copyOf(loaded);
+        log.info("Loaded [{}] JWT signing keys", loaded.size());
+    }
+
+    private PublicKey key(String kid) {
+        PublicKey key = keys.get(kid != null ? kid : "");
+
+        if (key == null && !jwksUri.isBlank()) {
+            // the key may have been rotated in, this token still goes to the auth API
+            refreshAsync();
+        }
+
+        return key;
+    }
+
+    private void validate(JsonNode claims) {
+        long now = Instant.now().getEpochSecond();
+        long skew = CLOCK_SKEW.toSeconds();
+
+        if (claims.path("exp").asLong() + skew < now) {
+            throw rejected("expired");
+        }
+        if (claims.hasNonNull("nbf") && claims.path("nbf").asLong() - skew > now) {
+            throw rejected("not yet valid");
+        }
+        if (!issuer.isBlank() && !issuer.equals(claims.path("iss").asText())) {
+            throw rejected("unexpected issuer");
+        }
+        if (!audience.isBlank() && !audiences(claims).contains(audience)) {
+            throw rejected("unexpected audience");
+        }
+        if (claims.path("sub").asText().isBlank()) {
+            throw rejected("missing subject");
+        }
+    }
+
+    private static boolean signatureMatches(PublicKey key, String[] parts) {
+        try {
+            Signature signature = Signature.getInstance("SHA256withRSA");
+            signature.initVerify(key);
+            signature.update((parts[0] + "." + parts[1]).getBytes(US_ASCII));
+            return signature.verify(BASE64URL.decode(parts[2]));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static List<String> roles(JsonNode claims) {
+        List<String> roles = new ArrayList<>();
+        claims.path("roles").forEach(role -> roles.add(role.asText()));
+        return roles;
+    }
+
+    private static List<String> audiences(JsonNode claims) {
+        JsonNode aud = claims.path("aud");
+        if (aud.isTextual()) {
+            return List.of(aud.asText());
+        }
+
+        List<String> audiences = new ArrayList<>();
+        aud.forEach(value -> audiences.add(value.asText()));
+        return audiences;
+    }
+
+    private static JsonNode decode(String part) {
+        try {
+            return JSON.readTree(BASE64URL.decode(part));
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static UnauthorizedException rejected(String reason) {
+        Metrics.counter("knotes.auth.local", "outcome", "rejected").increment();
+        return new UnauthorizedException("Invalid token: " + reason);
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.lhamacorp.knotes.config;
+
+import com.lhamacorp.knotes.client.CurrentUserCache;
+import com.lhamacorp.knotes.util.CircuitBreaker;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Collection;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Actuator endpoint showing the state of the auth API circuit breaker and how long background
+ * revalidations of cached identities take.
+ */
+@Component
+@Endpoint(id = "auth")
+public class AuthEndpoint {
+
+    private final CurrentUserCache currentUsers;
+
+    public AuthEndpoint(CurrentUserCache currentUsers) {
+        this.currentUsers = currentUsers;
+    }
+
+    @ReadOperation
+    public Auth auth() {
+        CircuitBreaker breaker = currentUsers.breaker();
+        Collection<Timer> timers = Metrics.globalRegistry.find("knotes.auth.refresh").timers();
+
+        long count = timers.stream().mapToLong(Timer::count).sum();
+        double total = timers.stream().mapToDouble(timer -> timer.totalTime(MILLISECONDS)).sum();
+        double max = timers.stream().mapToDouble(timer -> timer.max(MILLISECONDS)).max().orElse(0);
+
+        return new Auth(
+                new Breaker(breaker.state(), breaker.failures(), breaker.openedAt()),
+                new Refresh(count, count > 0 ? total / count : 0, max));
+    }
+
+    public record Auth(Breaker breaker, Refresh refresh) {
+    }
+
+    public record Breaker(CircuitBreaker.State state, int failures, Instant openedAt) {
+    }
+
+    public record Refresh(long count, double meanMillis, double maxMillis) {
+    }
+
+}
@@ -1,11 +1,18 @@
 package com.lhamacorp.knotes.config;
 
+import com.github.benmanes.caffeine.cache.Weigher;
+import com.lhamacorp.knotes.domain.Note;
+import com.lhamacorp.knotes.util.DerivedKeyCache;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.caffeine.CaffeineCache;
 import org.springframework.cache.support.SimpleCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 
 import java.time.Duration;
 import java.util.List;
@@ -17,23 +24,73 @@ import static java.time.Duration.ofSeconds;
 @EnableCaching
 public class CacheConfig {
 
+    public static final String CONTENT = "content";
+    public static final String DECODED = "decoded";
+    public static final String METADATA = "metadata";
+    public static final String CURRENT = "current";
+    public static final String MISSING = "missing";
+    public static final String REJECTED = "rejected";
+
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
     @Bean
-    public CacheManager cacheManager() {
-        CaffeineCache content = build("content", ofSeconds(60), 1000);
-        CaffeineCache metadata = build("metadata", ofSeconds(10), 500);
-        CaffeineCache current = build("current", ofSeconds(300), 1000);
+    public CacheManager cacheManager(@Value("${cache.content.max-size:64MB}") DataSize contentMaxSize,
+                                     @Value("${cache.decoded.max-size:128MB}") DataSize decodedMaxSize,
+                                     @Value("${auth.cache.ttl:PT5M}") Duration currentTtl,
+                                     @Value("${auth.cache.grace:PT15M}") Duration currentGrace) {
+        CaffeineCache content = buildWeighted(CONTENT, ofSeconds(60), contentMaxSize, CacheConfig::weighNote);
+        CaffeineCache decoded = buildWeighted(DECODED, ofSeconds(60), decodedMaxSize, CacheConfig::weighDecoded);
+        CaffeineCache metadata = build(METADATA, ofSeconds(10), 500);
+        // identities past their ttl are served while being revalidated, see CurrentUserCache
+        CaffeineCache current = build(CURRENT, currentTtl.plus(currentGrace), 1000);
+        CaffeineCache missing = build(MISSING, ofSeconds(60), 10_000);
+        CaffeineCache rejected = build(REJECTED, ofSeconds(30), 10_000);
 
         SimpleCacheManager manager = new SimpleCacheManager();
-        manager.setCaches(List.of(content, metadata, current));
+        manager.setCaches(List.of(content, decoded, metadata, current, missing, rejected));
         return manager;
     }
 
+    @Bean
+    public MeterBinder derivedKeyCacheMetrics() {
+        return registry -> CaffeineCacheMetrics.monitor(registry, DerivedKeyCache.cache(), "derivedKeys");
+    }
+
     private CaffeineCache build(String name, Duration duration, long size) {
-        return new CaffeineCache(name, newBuilder()
+        return new CoalescingCaffeineCache(name, newBuilder()
                 .expireAfterWrite(duration)
                 .maximumSize(size)
                 .recordStats()
                 .build());
     }
 
-}
\ No newline at end of file
+    private CaffeineCache buildWeighted(String name, Duration duration, DataSize maxSize, Weigher<Object, Object> weigher) {
+        return new CoalescingCaffeineCache(name, newBuilder()
+                .expireAfterWrite(duration)
+                .maximumWeight(maxSize.toBytes())
+                .weigher(weigher)
+                .recordStats()
+                .build());
+    }
+
+    /**
+     * Weighs a cached note by its stored (compressed, possibly encrypted) payload.
+     */
+    private static int weighNote(Object key, Object value) {
+        if (value instanceof Note note && note.compressedData() != null) {
+            return ENTRY_OVERHEAD_BYTES + note.compressedData().length();
+        }
+        return ENTRY_OVERHEAD_BYTES;
+    }
+
+    /**
+     * Weighs decoded content by its worst-case (UTF-16) heap size.
+     */
+    private static int weighDecoded(Object key, Object value) {
+        if (value instanceof String content) {
+            return ENTRY_OVERHEAD_BYTES + (int) Math.min(Integer.MAX_VALUE - ENTRY_OVERHEAD_BYTES, 2L * content.length());
+        }
+        return ENTRY_OVERHEAD_BYTES;
+    }
+
+}
@@ -0,0 +1,161 @@
+package com.lhamacorp.knotes.config;
+
+import jakarta.annotation.PostConstruct;
+import com.mongodb.client.model.ReplaceOptions;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.slf4j.Logger;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.slf4j.LoggerFactory.getLogger;
+import static org.springframework.data.domain.Sort.Direction.ASC;
+
+/**
+ * Declares the indexes every repository query relies on, creates them on startup and
+ * verifies they exist before the application starts serving.
+ */
+@Configuration
+public class IndexConfig {
+
+    public static final String NOTES = "notes";
+    public static final String PINS = "pins";
+    public static final String MIGRATIONS = "migrations";
+
+    /**
+     * Notes of a user in ULID order: id listing, metadata listing and keyset pagination.
+     */
+    public static final IndexSpec NOTES_BY_OWNER = new IndexSpec(NOTES, new Index()
+            .on("createdBy", ASC)
+            .on("_id", ASC)
+            .named("createdBy_id"));
+
+    /**
+     * Empty PUBLIC notes by age, for the cleanup job. Only empty notes are indexed.
+     */
+    public static final IndexSpec EMPTY_PUBLIC_NOTES = new IndexSpec(NOTES, new Index()
+            .on("createdAt", ASC)
+            .named("empty_public_createdAt")
+            .partial(PartialIndexFilter.of(new Document("content", new Binary(new byte[0]))
+                    .append("encryptionMode", "PUBLIC"))));
+
+    /**
+     * One pin per user and note. Its prefix also serves the lookups by user.
+     */
+    public static final IndexSpec PINS_BY_USER_AND_NOTE = new IndexSpec(PINS, new Index()
+            .on("userId", ASC)
+            .on("noteId", ASC)
+            .unique()
+            .named("userId_noteId"));
+
+    public static final IndexSpec PINS_BY_NOTE = new IndexSpec(PINS, new Index()
+            .on("noteId", ASC)
+            .named("noteId"));
+
+    public static final List<IndexSpec> INDEXES = List.of(NOTES_BY_OWNER, EMPTY_PUBLIC_NOTES, PINS_BY_USER_AND_NOTE, PINS_BY_NOTE);
+
+    private static final String DEDUPLICATE_PINS = "deduplicate-pins";
+
+    private static final Logger log = getLogger(IndexConfig.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    public IndexConfig(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @PostConstruct
+    public void createIndexes() {
+        boolean deduplicatePins = !migrated(DEDUPLICATE_PINS);
+        if (deduplicatePins) {
+            removeDuplicatePins();
+        }
+
+        for (IndexSpec spec : INDEXES) {
+            mongoTemplate.indexOps(spec.collection()).createIndex(spec.index());
+        }
+
+        verifyIndexes();
+
+        // only once the unique index is in place can no new duplicates appear
+        if (deduplicatePins) {
+            markMigrated(DEDUPLICATE_PINS);
+        }
+    }
+
+    /**
+     * @throws IllegalStateException when a declared index is missing after creation
+     */
+    public void verifyIndexes() {
+        List<String> missing = new ArrayList<>();
+
+        for (IndexSpec spec : INDEXES) {
+            Set<String> existing = mongoTemplate.indexOps(spec.collection()).getIndexInfo().stream()
+                    .map(IndexInfo::getName)
+                    .collect(Collectors.toSet());
+
+            if (!existing.contains(spec.name())) {
+                missing.add(spec.collection() + "." + spec.name());
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("Missing indexes " + missing);
+        }
+
+        log.info("Verified indexes [{}]", INDEXES.stream().map(spec -> spec.collection() + "." + spec.name()).toList());
+    }
+
+    /**
+     * Pins used to be saved without a uniqueness check. Keeps the oldest pin of each
+     * (userId, noteId) pair so the unique index can be built.
+     *
+     * <p>Runs until the unique index has been built once, as recorded in the {@code migrations}
+     * collection. Replicas starting together may both run it, which is harmless.</p>
+     */
+    private void removeDuplicatePins() {
+        List<Document> pipeline = List.of(
+                new Document("$sort", new Document("createdAt", 1)),
+                new Document("$group", new Document("_id", new Document("userId", "$userId").append("noteId", "$noteId"))
+                        .append("ids", new Document("$push", "$_id"))
+                        .append("count", new Document("$sum", 1))),
+                new Document("$match", new Document("count", new Document("$gt", 1))));
+
+        List<Object> duplicates = new ArrayList<>();
+        for (Document group : mongoTemplate.getCollection(PINS).aggregate(pipeline).allowDiskUse(true)) {
+            List<?> ids = group.getList("ids", Object.class);
+            duplicates.addAll(ids.subList(1, ids.size()));
+        }
+
+        if (!duplicates.isEmpty()) {
+            mongoTemplate.getCollection(PINS).deleteMany(new Document("_id", new Document("$in", duplicates)));
+            log.info("Removed [{}] duplicate pins", duplicates.size());
+        }
+    }
+
+    private boolean migrated(String migration) {
+        return mongoTemplate.getCollection(MIGRATIONS).countDocuments(new Document("_id", migration)) > 0;
+    }
+
+    private void markMigrated(String migration) {
+        mongoTemplate.getCollection(MIGRATIONS).replaceOne(new Document("_id", migration),
+                new Document("_id", migration).append("appliedAt", Instant.now()), new ReplaceOptions().upsert(true));
+    }
+
+    public record IndexSpec(String collection, Index index) {
+
+        public String name() {
+            return (String) index.getIndexOptions().get("name");
+        }
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.lhamacorp.knotes.config;
+
+import com.lhamacorp.knotes.domain.Lease;
+import com.lhamacorp.knotes.service.LeaseService;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Actuator endpoint showing who holds each job lease and how long the last run took.
+ */
+@Component
+@Endpoint(id = "leases")
+public class LeaseEndpoint {
+
+    private final LeaseService leaseService;
+
+    public LeaseEndpoint(LeaseService leaseService) {
+        this.leaseService = leaseService;
+    }
+
+    @ReadOperation
+    public Leases leases() {
+        return new Leases(leaseService.instanceId(), leaseService.leases());
+    }
+
+    public record Leases(String instance, List<Lease> leases) {
+    }
+
+}
@@ -1,15 +1,36 @@
 package com.lhamacorp.knotes.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
 @Configuration
 public class RestConfig {
 
+    /**
+     * Shared JDK client: keeps connections alive and pooled, and negotiates HTTP/2 when the
+     * server supports it.
+     */
+    @Bean
+    public HttpClient httpClient(@Value("${auth.connect-timeout:2s}") Duration connectTimeout) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
     @Bean
-    RestTemplate rest() {
-        return new RestTemplate();
+    public RestTemplate rest(HttpClient httpClient, @Value("${auth.read-timeout:3s}") Duration readTimeout) {
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+        return new RestTemplate(requestFactory);
     }
 
 }
@@ -1,11 +1,12 @@
 package com.lhamacorp.knotes.context;
 
-import com.lhamacorp.knotes.client.AuthClient;
 import com.lhamacorp.knotes.client.AuthClient.CurrentUser;
+import com.lhamacorp.knotes.client.CurrentUserCache;
+import com.lhamacorp.knotes.client.JwtVerifier;
+import com.lhamacorp.knotes.exception.ServiceUnavailableException;
 import com.lhamacorp.knotes.exception.UnauthorizedException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
@@ -16,10 +17,12 @@ import static java.util.Collections.emptyList;
 @Component
 public class ServiceContextFilter extends OncePerRequestFilter {
 
-    private final AuthClient authClient;
+    private final CurrentUserCache currentUsers;
+    private final JwtVerifier jwtVerifier;
 
-    public ServiceContextFilter(AuthClient authClient) {
-        this.authClient = authClient;
+    public ServiceContextFilter(CurrentUserCache currentUsers, JwtVerifier jwtVerifier) {
+        this.currentUsers = currentUsers;
+        this.jwtVerifier = jwtVerifier;
     }
 
     @Override
@@ -39,31 +42,31 @@ public class ServiceContextFilter extends OncePerRequestFilter {
             return;
         }
 
-        try {
-            CurrentUser user = extractCurrentUser(request);
-
-            if (user != null) {
-                UserContextHolder.set(new UserContext(user.id(), user.username(), user.roles()));
+        // resolved on first use, so requests that never ask for the user skip the auth call
+        String token = request.getHeader("Authorization");
+        UserContextHolder.setLazily(() -> resolve(token));
 
-                try {
-                    filterChain.doFilter(request, response);
-                } finally {
-                    UserContextHolder.clear();
-                }
-            } else {
-                response.sendError(HttpStatus.UNAUTHORIZED.value(), "Unauthorized: User not found");
-            }
-        } catch (UnauthorizedException e) {
-            response.sendError(HttpStatus.UNAUTHORIZED.value(), "Unauthorized: Invalid token");
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            UserContextHolder.clear();
         }
     }
 
-    private CurrentUser extractCurrentUser(HttpServletRequest request) {
-        String token = request.getHeader("Authorization");
-
-        return token == null
+    /**
+     * @throws UnauthorizedException when the token is not valid, answered with 401
+     * @throws ServiceUnavailableException when the token cannot be validated right now, answered with 503
+     */
+    private UserContext resolve(String token) {
+        CurrentUser user = token == null
                 ? new CurrentUser("1", "anon", emptyList())
-                : authClient.current(token);
+                : jwtVerifier.verify(token).orElseGet(() -> currentUsers.get(token));
+
+        if (user == null) {
+            throw new UnauthorizedException("Unauthorized: User not found");
+        }
+
+        return new UserContext(user.id(), user.username(), user.roles());
     }
 
-}
\ No newline at end of file
+}
@@ -1,23 +1,70 @@
 package com.lhamacorp.knotes.context;
 
+import java.util.function.Supplier;
+
+/**
+ * Holds the user of the current request.
+ *
+ * <p>The user is set as a resolver and only resolved on the first {@link #get()} or
+ * {@link #isAuthenticated()}, so requests that never ask who the caller is (static resources,
+ * PUBLIC reads) never validate the token. The result, or the failure, is kept for the rest of
+ * the request.</p>
+ */
 public class UserContextHolder {
 
-    private static final ThreadLocal<UserContext> CONTEXT = new ThreadLocal<>();
+    private static final ThreadLocal<Supplier<UserContext>> CONTEXT = new ThreadLocal<>();
 
     public static void set(UserContext serviceContext) {
-        CONTEXT.set(serviceContext);
+        CONTEXT.set(() -> serviceContext);
+    }
+
+    public static void setLazily(Supplier<UserContext> resolver) {
+        CONTEXT.set(new Memoized(resolver));
     }
 
     public static UserContext get() {
-        return CONTEXT.get();
+        Supplier<UserContext> context = CONTEXT.get();
+        return context != null ? context.get() : null;
     }
 
     public static boolean isAuthenticated() {
-        return CONTEXT.get().roles().contains("USER");
+        return get().roles().contains("USER");
     }
 
     public static void clear() {
         CONTEXT.remove();
     }
 
+    /**
+     * Only ever used by the request thread that set it, so no synchronization is needed.
+     */
+    private static final class Memoized implements Supplier<UserContext> {
+
+        private Supplier<UserContext> resolver;
+        private UserContext context;
+        private RuntimeException failure;
+
+        private Memoized(Supplier<UserContext> resolver) {
+            this.resolver = resolver;
+        }
+
+        @Override
+        public UserContext get() {
+            if (resolver != null) {
+                try {
+                    context = resolver.get();
+                } catch (RuntimeException e) {
+                    failure = e;
+                } finally {
+                    resolver = null;
+                }
+            }
+
+            if (failure != null) {
+                throw failure;
+            }
+            return context;
+        }
+    }
+
 }
@@ -0,0 +1,18 @@
+package com.lhamacorp.knotes.domain;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+@Document("leases")
+public record Lease(
+        @Id String name,
+        String holder,
+        Instant acquiredAt,
+        Instant renewedAt,
+        Instant expiresAt,
+        Instant lastRunAt,
+        Long lastRunMillis
+) {
+}
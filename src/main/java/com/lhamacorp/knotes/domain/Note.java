@@ -9,7 +9,12 @@ import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.HexFormat;
 
 import static com.lhamacorp.knotes.domain.EncryptionMode.PUBLIC;
 
@@ -22,7 +27,10 @@ public record Note(
         Instant modifiedAt,
         EncryptionMode encryptionMode,
         @Field("salt") Binary encryptionSalt,
-        Boolean requiresPassword
+        Boolean requiresPassword,
+        @Field("dataKey") Binary wrappedDataKey,
+        @Field("hash") String contentHash,
+        Long version
 ) {
 
     public static final String ANONYMOUS = "1";
@@ -43,10 +51,26 @@ public record Note(
             salt = EncryptionUtils.generateSalt();
         }
 
-        Binary processedContent = processContent(content, mode, createdBy, password, salt);
+        // PRIVATE notes use envelope encryption: a random data key wrapped by the owner's key-encryption key
+        byte[] dataKey = null;
+        Binary wrappedDataKey = null;
+        if (mode == EncryptionMode.PRIVATE && content != null) {
+            dataKey = EncryptionUtils.generateDataKey();
+            wrappedDataKey = new Binary(EncryptionUtils.wrapKey(dataKey, EncryptionUtils.deriveUserKey(createdBy)));
+        }
+
+        Binary processedContent = processContent(content, mode, createdBy, password, salt, dataKey);
         Binary storedSalt = salt != null ? new Binary(salt) : null;
 
-        this(id, processedContent, createdBy, createdAt, modifiedAt, mode, storedSalt, mode == EncryptionMode.PASSWORD_SHARED);
+        if (dataKey != null) {
+            Arrays.fill(dataKey, (byte) 0);
+        }
+
+        this(id, processedContent, createdBy, createdAt, modifiedAt, mode, storedSalt, mode == EncryptionMode.PASSWORD_SHARED, wrappedDataKey, hash(processedContent), 0L);
+    }
+
+    public Note withVersion(Long version) {
+        return new Note(id, compressedData, createdBy, createdAt, modifiedAt, encryptionMode, encryptionSalt, requiresPassword, wrappedDataKey, contentHash, version);
     }
 
     public String content() {
@@ -58,6 +82,23 @@ public record Note(
             return null;
         }
 
+        return CompressionUtils.decompress(decryptedData(requestingUserId, password));
+    }
+
+    /**
+     * Opens the content as a UTF-8 stream that is decompressed incrementally.
+     * Decryption still happens up front, so access and password errors surface
+     * before anything is read.
+     */
+    public InputStream contentStream(String requestingUserId, String password) {
+        if (compressedData == null) {
+            return InputStream.nullInputStream();
+        }
+
+        return CompressionUtils.openStream(decryptedData(requestingUserId, password));
+    }
+
+    private byte[] decryptedData(String requestingUserId, String password) {
         byte[] data = compressedData.getData();
 
         EncryptionMode mode = encryptionMode != null ? encryptionMode : PUBLIC;
@@ -75,7 +116,9 @@ public record Note(
                     if (!createdBy.equals(requestingUserId)) {
                         throw new UnauthorizedException("Not authorized to decrypt this content");
                     }
-                    key = EncryptionUtils.deriveOwnerKey(requestingUserId, salt);
+                    key = wrappedDataKey != null
+                            ? EncryptionUtils.unwrapKey(wrappedDataKey.getData(), EncryptionUtils.deriveUserKey(requestingUserId))
+                            : EncryptionUtils.deriveOwnerKey(requestingUserId, salt);
 
                 } else {
                     if (password == null || password.isEmpty()) {
@@ -93,26 +136,28 @@ public record Note(
             }
         }
 
-        return CompressionUtils.decompress(data);
+        return data;
     }
 
-    private static Binary processContent(String content, EncryptionMode encryptionMode, String createdBy, String password, byte[] salt) {
+    private static Binary processContent(String content, EncryptionMode encryptionMode, String createdBy, String password, byte[] salt, byte[] dataKey) {
         if (content == null) {
             return null;
         }
 
-        byte[] compressed = CompressionUtils.compress(content);
         EncryptionMode mode = encryptionMode != null ? encryptionMode : PUBLIC;
 
         if (mode == PUBLIC || "1".equals(createdBy) || salt == null) {
-            return new Binary(compressed);
+            // stays on the default codec, so GZIP content can be served as-is
+            return new Binary(CompressionUtils.compress(content));
         }
 
+        byte[] compressed = CompressionUtils.compressForEncryption(content);
+
         byte[] key;
 
         try {
             if (mode == EncryptionMode.PRIVATE) {
-                key = EncryptionUtils.deriveOwnerKey(createdBy, salt);
+                key = dataKey != null ? dataKey : EncryptionUtils.deriveOwnerKey(createdBy, salt);
             } else {
                 if (password == null || password.isEmpty()) {
                     throw new IllegalArgumentException("Password required for PASSWORD_SHARED mode");
@@ -130,4 +175,20 @@ public record Note(
         }
     }
 
+    /**
+     * Hashes the stored bytes, so a change of content can be detected without decoding it.
+     */
+    private static String hash(Binary data) {
+        if (data == null) {
+            return null;
+        }
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data.getData());
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
 }
@@ -0,0 +1,20 @@
+package com.lhamacorp.knotes.exception;
+
+import com.lhamacorp.knotes.api.dto.NoteMetadata;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.CONFLICT)
+public class ConflictException extends RuntimeException {
+
+    private final NoteMetadata current;
+
+    public ConflictException(String message, NoteMetadata current) {
+        super(message);
+        this.current = current;
+    }
+
+    public NoteMetadata current() {
+        return current;
+    }
+}
@@ -0,0 +1,11 @@
+package com.lhamacorp.knotes.exception;
+
+/**
+ * The auth API refused the token itself (401/403), as opposed to failing to answer.
+ */
+public class TokenRejectedException extends UnauthorizedException {
+
+    public TokenRejectedException(String message) {
+        super(message);
+    }
+}
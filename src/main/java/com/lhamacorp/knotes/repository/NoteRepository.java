@@ -1,22 +1,36 @@
 package com.lhamacorp.knotes.repository;
 
 import com.lhamacorp.knotes.domain.Note;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface NoteRepository extends MongoRepository<Note, String> {
+public interface NoteRepository extends MongoRepository<Note, String>, NoteRepositoryCustom {
 
-    @Query(value = "{ '_id': ?0 }", fields = "{ 'createdAt': 1, 'modifiedAt': 1 }")
+    String METADATA_FIELDS = "{ 'createdBy': 1, 'createdAt': 1, 'modifiedAt': 1, 'encryptionMode': 1, 'requiresPassword': 1, 'hash': 1, 'version': 1 }";
+    String ID_FIELD = "{ '_id': 1 }";
+    String BY_ID = "{ '_id': 1 }";
+
+    String IDS_BY_OWNER = "{ 'createdBy': ?0, '_id': { '$gt': ?1 } }";
+    String METADATA_BY_OWNER = "{ 'createdBy': ?0, '_id': { '$gt': ?1 }, 'modifiedAt': { '$gte': ?2 } }";
+
+    @Query(value = "{ '_id': ?0 }", fields = METADATA_FIELDS)
     Optional<Note> findMetadataById(String id);
 
-    @Query(value = "{ 'content': BinData(0, ''), 'encryptionMode': 'PUBLIC' }", fields = "{ '_id': 1, 'createdAt': 1 }")
-    List<Note> findEmptyNotes();
+    @Query(value = METADATA_BY_OWNER, fields = METADATA_FIELDS, sort = BY_ID)
+    Stream<Note> streamMetadataByCreatedBy(String createdBy, String afterId, Instant modifiedSince, Limit limit);
+
+    @Query(value = "{}", fields = ID_FIELD)
+    Stream<Note> streamAllIds();
 
-    List<Note> findAllByCreatedBy(String createdBy);
+    @Query(value = IDS_BY_OWNER, fields = ID_FIELD, sort = BY_ID)
+    List<Note> findIdsByCreatedBy(String createdBy, String afterId, Limit limit);
 
 }
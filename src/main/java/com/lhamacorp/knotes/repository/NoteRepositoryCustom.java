@@ -0,0 +1,70 @@
+package com.lhamacorp.knotes.repository;
+
+import com.lhamacorp.knotes.domain.EncryptionMode;
+import com.lhamacorp.knotes.domain.Note;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.lhamacorp.knotes.domain.EncryptionMode.PRIVATE;
+import static com.lhamacorp.knotes.domain.EncryptionMode.PUBLIC;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+public interface NoteRepositoryCustom {
+
+    /**
+     * Replaces the content of a note in a single {@code findAndModify}, provided the stored note
+     * still has the expected encryption mode, is owned by {@code userId} when PRIVATE, and is at
+     * {@code expectedVersion} when one is given. The version is incremented on success.
+     *
+     * @param replacement the note carrying the new content, encryption data and modification time
+     * @return the updated note, or {@code null} when no stored note matched the conditions
+     */
+    Note updateIfUnchanged(Note replacement, EncryptionMode expectedMode, String userId, Long expectedVersion);
+
+    /**
+     * Matches the note {@code id} only while it still has the expected encryption mode, is owned
+     * by {@code userId} when PRIVATE, and is at {@code expectedVersion} when one is given.
+     */
+    static Query unchanged(String id, EncryptionMode expectedMode, String userId, Long expectedVersion) {
+        List<Criteria> conditions = new ArrayList<>();
+        conditions.add(where("_id").is(id));
+
+        // notes written before encryption modes existed have no mode and are PUBLIC
+        conditions.add(expectedMode == PUBLIC
+                ? where("encryptionMode").in(PUBLIC.name(), null)
+                : where("encryptionMode").is(expectedMode.name()));
+
+        if (expectedMode == PRIVATE) {
+            conditions.add(where("createdBy").is(userId));
+        }
+
+        // notes written before versioning have no version and are at version 0
+        if (expectedVersion != null) {
+            conditions.add(expectedVersion == 0
+                    ? where("version").in(0L, null)
+                    : where("version").is(expectedVersion));
+        }
+
+        return new Query(new Criteria().andOperator(conditions));
+    }
+
+    /**
+     * Sets the content, encryption data and modification time of {@code replacement}, leaving
+     * the version to the caller.
+     */
+    static Update replaceContent(Note replacement) {
+        return new Update()
+                .set("content", replacement.compressedData())
+                .set("salt", replacement.encryptionSalt())
+                .set("dataKey", replacement.wrappedDataKey())
+                .set("hash", replacement.contentHash())
+                .set("encryptionMode", replacement.encryptionMode())
+                .set("requiresPassword", replacement.requiresPassword())
+                .set("modifiedAt", replacement.modifiedAt());
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.lhamacorp.knotes.repository;
+
+import com.lhamacorp.knotes.domain.EncryptionMode;
+import com.lhamacorp.knotes.domain.Note;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import static com.lhamacorp.knotes.repository.NoteRepositoryCustom.replaceContent;
+import static com.lhamacorp.knotes.repository.NoteRepositoryCustom.unchanged;
+import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
+
+class NoteRepositoryImpl implements NoteRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    NoteRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Note updateIfUnchanged(Note replacement, EncryptionMode expectedMode, String userId, Long expectedVersion) {
+        return mongoTemplate.findAndModify(
+                unchanged(replacement.id(), expectedMode, userId, expectedVersion),
+                replaceContent(replacement).inc("version", 1),
+                options().returnNew(true),
+                Note.class);
+    }
+
+}
@@ -4,6 +4,7 @@ import com.lhamacorp.knotes.domain.Pin;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface PinRepository extends MongoRepository<Pin, String> {
 
@@ -11,6 +12,8 @@ public interface PinRepository extends MongoRepository<Pin, String> {
 
     List<Pin> findAllByNoteId(String noteId);
 
+    Optional<Pin> findByUserIdAndNoteId(String userId, String noteId);
+
     void deleteAllByNoteId(String noteId);
 
     void deletePinByUserIdAndNoteId(String noteId, String userId);
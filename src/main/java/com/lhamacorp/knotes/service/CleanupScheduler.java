@@ -1,49 +1,178 @@
 package com.lhamacorp.knotes.service;
 
-import com.lhamacorp.knotes.domain.Note;
-import com.lhamacorp.knotes.repository.NoteRepository;
-import com.lhamacorp.knotes.repository.PinRepository;
+import com.mongodb.client.MongoCursor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.bson.Document;
+import org.bson.types.Binary;
 import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
+import static com.lhamacorp.knotes.config.CacheConfig.CONTENT;
+import static com.lhamacorp.knotes.config.CacheConfig.DECODED;
+import static com.lhamacorp.knotes.config.CacheConfig.METADATA;
+import static com.lhamacorp.knotes.config.IndexConfig.NOTES;
+import static com.lhamacorp.knotes.config.IndexConfig.PINS;
 import static java.time.Instant.now;
 import static java.time.temporal.ChronoUnit.DAYS;
 import static org.slf4j.LoggerFactory.getLogger;
 
+/**
+ * Deletes empty PUBLIC notes older than a day that nobody has pinned.
+ *
+ * <p>Candidates come from a single aggregation: the age cutoff is part of the match, which is
+ * served by the partial index on empty PUBLIC notes, and pinned notes are excluded by a
+ * {@code $lookup} anti-join. The cursor is consumed in batches, each deleted with one
+ * {@code deleteMany} that re-checks the note is still empty, pausing between batches. The
+ * notes of each batch are evicted from the note caches, which the direct delete bypasses.</p>
+ *
+ * <p>Only the replica holding the {@code cleanup} lease runs the job.</p>
+ */
 @Component
 public class CleanupScheduler {
 
-    private final NoteRepository noteRepository;
-    private final PinRepository pinRepository;
+    private final MongoTemplate mongoTemplate;
+    private final CacheManager cacheManager;
+    private final NoteWriteBuffer writeBuffer;
+    private final LeaseService leaseService;
+    private final int batchSize;
+    private final Duration batchPause;
+
+    private final Counter scanned = Metrics.counter("knotes.cleanup.scanned");
+    private final Counter deleted = Metrics.counter("knotes.cleanup.deleted");
+    private final Timer duration = Metrics.timer("knotes.cleanup.duration");
 
     private static final String ONCE_PER_DAY_AT_2AM = "0 0 2 * * *";
+    private static final String LEASE = "cleanup";
+    private static final Duration LEASE_TTL = Duration.ofMinutes(10);
     private static final Logger log = getLogger(CleanupScheduler.class);
 
-    public CleanupScheduler(NoteRepository noteRepository, PinRepository pinRepository) {
-        this.noteRepository = noteRepository;
-        this.pinRepository = pinRepository;
+    public CleanupScheduler(MongoTemplate mongoTemplate,
+                            CacheManager cacheManager,
+                            NoteWriteBuffer writeBuffer,
+                            LeaseService leaseService,
+                            @Value("${cleanup.batch-size:500}") int batchSize,
+                            @Value("${cleanup.batch-pause:PT0.1S}") Duration batchPause) {
+        this.mongoTemplate = mongoTemplate;
+        this.cacheManager = cacheManager;
+        this.writeBuffer = writeBuffer;
+        this.leaseService = leaseService;
+        this.batchSize = batchSize;
+        this.batchPause = batchPause;
     }
 
     @Scheduled(cron = ONCE_PER_DAY_AT_2AM)
     public void cleanup() {
-        List<String> ids = noteRepository.findEmptyNotes()
-                .stream()
-                .filter(note -> note.createdAt().isBefore(now().minus(1, DAYS)))
-                .map(Note::id)
-                .filter(id -> !isPinned(id))
-                .toList();
-
-        if (!ids.isEmpty()) {
-            log.info("Cleaning empty notes [{}]", ids);
-            noteRepository.deleteAllById(ids);
+        // every replica fires the schedule, only the lease holder does the work
+        leaseService.runExclusively(LEASE, LEASE_TTL, () -> duration.record(this::deleteEmptyNotes));
+    }
+
+    private void deleteEmptyNotes() {
+        // a buffered update may be about to give an empty note its content
+        writeBuffer.flush();
+
+        Instant cutoff = now().minus(1, DAYS);
+        long candidates = 0;
+        long removed = 0;
+
+        try (MongoCursor<Document> cursor = mongoTemplate.getCollection(NOTES)
+                .aggregate(candidates(cutoff))
+                .batchSize(batchSize)
+                .cursor()) {
+
+            List<Document> batch = new ArrayList<>(batchSize);
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                candidates++;
+
+                if (batch.size() == batchSize) {
+                    removed += delete(batch);
+                    batch.clear();
+                    pause();
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                removed += delete(batch);
+            }
+        }
+
+        scanned.increment(candidates);
+        deleted.increment(removed);
+
+        if (removed > 0) {
+            log.info("Cleaned [{}] empty notes out of [{}] candidates", removed, candidates);
+        }
+    }
+
+    static List<Document> candidates(Instant cutoff) {
+        return List.of(
+                new Document("$match", emptyPublicNote().append("createdAt", new Document("$lt", cutoff))),
+                new Document("$project", new Document("_id", 1).append("hash", 1).append("modifiedAt", 1)),
+                new Document("$lookup", new Document("from", PINS)
+                        .append("localField", "_id")
+                        .append("foreignField", "noteId")
+                        .append("pipeline", List.of(new Document("$limit", 1), new Document("$project", new Document("_id", 1))))
+                        .append("as", "pins")),
+                new Document("$match", new Document("pins", new Document("$size", 0))),
+                new Document("$project", new Document("_id", 1).append("hash", 1).append("modifiedAt", 1)));
+    }
+
+    private long delete(List<Document> notes) {
+        List<Object> ids = notes.stream().map(note -> note.get("_id")).toList();
+
+        // re-checks emptiness, so a note that got content since the scan is kept
+        Document filter = emptyPublicNote().append("_id", new Document("$in", ids));
+        long removed = mongoTemplate.getCollection(NOTES).deleteMany(filter).getDeletedCount();
+
+        // evicting a note that was kept only costs a reload
+        evict(notes);
+        return removed;
+    }
+
+    private void evict(List<Document> notes) {
+        Cache content = cacheManager.getCache(CONTENT);
+        Cache metadata = cacheManager.getCache(METADATA);
+        Cache decoded = cacheManager.getCache(DECODED);
+
+        for (Document note : notes) {
+            String id = note.getString("_id");
+            if (content != null) {
+                content.evict(id);
+            }
+            if (metadata != null) {
+                metadata.evict(id);
+            }
+            if (decoded != null) {
+                Date modifiedAt = note.getDate("modifiedAt");
+                decoded.evict(NoteService.decodedKey(id, note.getString("hash"), modifiedAt != null ? modifiedAt.toInstant() : null));
+            }
         }
     }
 
-    private boolean isPinned(String noteId) {
-        return !pinRepository.findAllByNoteId(noteId).isEmpty();
+    private static Document emptyPublicNote() {
+        return new Document("content", new Binary(new byte[0])).append("encryptionMode", "PUBLIC");
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(batchPause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Cleanup interrupted", e);
+        }
     }
 
 }
@@ -0,0 +1,178 @@
+package com.lhamacorp.knotes.service;
+
+import com.lhamacorp.knotes.domain.Lease;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.slf4j.LoggerFactory.getLogger;
+import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Named leases stored in the {@code leases} collection, so that only one replica runs a
+ * scheduled job at a time.
+ *
+ * <p>A lease is taken with an upserting {@code findAndModify} that only matches when the lease
+ * is free, expired or already ours; if another replica holds it, the upsert hits the unique
+ * {@code _id} and fails. While the job runs a heartbeat keeps extending the lease. The lease is
+ * not released when the job finishes but left to expire, so replicas whose schedule fires a
+ * little later do not run the same job again. Lease documents are kept after they expire, as
+ * they also hold the history of the last run.</p>
+ *
+ * <p>If the heartbeat cannot renew the lease, for instance after a pause longer than the TTL, the
+ * job is interrupted, as another replica may take the lease over. A job that does not respond to
+ * interruption can overlap with that replica's run until it finishes.</p>
+ *
+ * <p>Instances are identified by a random id, logged on startup next to the process name, so the
+ * leases endpoint does not expose host names or pids.</p>
+ */
+@Service
+public class LeaseService {
+
+    private static final Logger log = getLogger(LeaseService.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final Clock clock;
+    private final String instanceId;
+
+    @Autowired
+    public LeaseService(MongoTemplate mongoTemplate) {
+        this(mongoTemplate, Clock.systemUTC(), UUID.randomUUID().toString());
+        log.info("Lease instance id [{}] for process [{}]", instanceId, ManagementFactory.getRuntimeMXBean().getName());
+    }
+
+    LeaseService(MongoTemplate mongoTemplate, Clock clock, String instanceId) {
+        this.mongoTemplate = mongoTemplate;
+        this.clock = clock;
+        this.instanceId = instanceId;
+    }
+
+    public String instanceId() {
+        return instanceId;
+    }
+
+    /**
+     * Runs {@code task} only if this instance holds, or can take, the lease {@code name}.
+     *
+     * @return whether the task ran here
+     */
+    public boolean runExclusively(String name, Duration ttl, Runnable task) {
+        if (!tryAcquire(name, ttl)) {
+            log.info("Skipping [{}], lease held by another instance", name);
+            return false;
+        }
+
+        Thread runner = Thread.currentThread();
+        AtomicBoolean lost = new AtomicBoolean();
+        Thread heartbeat = Thread.ofVirtual().name("lease-" + name).start(() -> heartbeat(name, ttl, runner, lost));
+        Instant startedAt = clock.instant();
+        long start = System.nanoTime();
+
+        try {
+            task.run();
+        } finally {
+            heartbeat.interrupt();
+            awaitTermination(heartbeat);
+
+            if (lost.get()) {
+                // the interrupt was meant for the task, not for whoever runs the next one on this thread
+                Thread.interrupted();
+            } else {
+                recordRun(name, startedAt, Duration.ofNanos(System.nanoTime() - start));
+            }
+        }
+
+        return true;
+    }
+
+    public boolean tryAcquire(String name, Duration ttl) {
+        Instant now = clock.instant();
+        Query query = new Query(where("_id").is(name)
+                .orOperator(where("holder").is(instanceId), where("expiresAt").lt(now)));
+        Update update = new Update()
+                .set("holder", instanceId)
+                .set("acquiredAt", now)
+                .set("renewedAt", now)
+                .set("expiresAt", now.plus(ttl));
+
+        try {
+            return mongoTemplate.findAndModify(query, update, options().upsert(true).returnNew(true), Lease.class) != null;
+        } catch (DuplicateKeyException e) {
+            // the lease exists and is held by someone else
+            return false;
+        }
+    }
+
+    public boolean renew(String name, Duration ttl) {
+        Instant now = clock.instant();
+        Query query = new Query(where("_id").is(name).and("holder").is(instanceId));
+        Update update = new Update()
+                .set("renewedAt", now)
+                .set("expiresAt", now.plus(ttl));
+
+        return mongoTemplate.updateFirst(query, update, Lease.class).getModifiedCount() == 1;
+    }
+
+    public List<Lease> leases() {
+        return mongoTemplate.findAll(Lease.class);
+    }
+
+    private void heartbeat(String name, Duration ttl, Thread runner, AtomicBoolean lost) {
+        Duration interval = ttl.dividedBy(3);
+
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            if (!renew(name, ttl)) {
+                log.warn("Lost lease [{}] while running, interrupting the job", name);
+                lost.set(true);
+                runner.interrupt();
+                return;
+            }
+        }
+    }
+
+    private static void awaitTermination(Thread heartbeat) {
+        boolean interrupted = false;
+
+        while (true) {
+            try {
+                heartbeat.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void recordRun(String name, Instant startedAt, Duration duration) {
+        Query query = new Query(where("_id").is(name).and("holder").is(instanceId));
+        Update update = new Update()
+                .set("lastRunAt", startedAt)
+                .set("lastRunMillis", duration.toMillis());
+
+        mongoTemplate.updateFirst(query, update, Lease.class);
+    }
+
+}
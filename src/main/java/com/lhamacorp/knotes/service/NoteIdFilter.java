@@ -0,0 +1,115 @@
+package com.lhamacorp.knotes.service;
+
+import com.github.f4b6a3.ulid.Ulid;
+import com.lhamacorp.knotes.domain.Note;
+import com.lhamacorp.knotes.repository.NoteRepository;
+import com.lhamacorp.knotes.util.BloomFilter;
+import org.slf4j.Logger;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.time.Instant.now;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * In-memory Bloom filter of existing note ids, used to answer "does this note exist?"
+ * without going to Mongo for ids that certainly do not.
+ *
+ * <p>The filter is built from an id-only scan on startup and rebuilt periodically, which is
+ * also how deleted ids drop out. Note ids are ULIDs, so an id created after the last scan
+ * (on this or any other instance) is recognised by its timestamp and always reported as
+ * possibly existing. Ids that are not ULIDs, or carry a timestamp in the future, can never
+ * exist.</p>
+ */
+@Component
+public class NoteIdFilter {
+
+    private static final Logger log = getLogger(NoteIdFilter.class);
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final long MIN_EXPECTED_INSERTIONS = 1024;
+    private static final Duration CLOCK_SKEW = Duration.ofMinutes(1);
+    private static final String REBUILD_INTERVAL = "${notes.id-filter.rebuild-interval:PT1H}";
+
+    private final NoteRepository repository;
+    private final NoteWriteBuffer writeBuffer;
+    private final Object lock = new Object();
+
+    private volatile Snapshot snapshot;
+    private List<String> pending;
+
+    public NoteIdFilter(NoteRepository repository, NoteWriteBuffer writeBuffer) {
+        this.repository = repository;
+        this.writeBuffer = writeBuffer;
+    }
+
+    /**
+     * @return {@code false} when the note certainly does not exist, {@code true} when it may
+     */
+    public boolean mightContain(String id) {
+        if (id == null || !Ulid.isValid(id)) {
+            return false;
+        }
+
+        long createdAt = Ulid.from(id).getTime();
+        if (createdAt > now().plus(CLOCK_SKEW).toEpochMilli()) {
+            return false;
+        }
+
+        Snapshot current = snapshot;
+        return current == null || createdAt >= current.coveredUntil() || current.filter().mightContain(id);
+    }
+
+    public void add(String id) {
+        synchronized (lock) {
+            if (snapshot != null) {
+                snapshot.filter().add(id);
+            }
+            if (pending != null) {
+                pending.add(id);
+            }
+        }
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = REBUILD_INTERVAL)
+    public void rebuild() {
+        long startedAt = now().minus(CLOCK_SKEW).toEpochMilli();
+
+        synchronized (lock) {
+            pending = new ArrayList<>();
+        }
+
+        try {
+            // the scan reads Mongo directly, so nothing may be left only in the buffer
+            writeBuffer.flush();
+
+            BloomFilter rebuilt = new BloomFilter(Math.max(MIN_EXPECTED_INSERTIONS, repository.count()), FALSE_POSITIVE_RATE);
+            try (Stream<Note> ids = repository.streamAllIds()) {
+                ids.forEach(note -> rebuilt.add(note.id()));
+            }
+
+            synchronized (lock) {
+                pending.forEach(rebuilt::add);
+                snapshot = new Snapshot(rebuilt, startedAt);
+            }
+
+            log.info("Note id filter rebuilt with [{}] ids, [{}] bytes", rebuilt.size(), rebuilt.sizeInBytes());
+        } finally {
+            synchronized (lock) {
+                pending = null;
+            }
+        }
+    }
+
+    /**
+     * A filter together with the ULID timestamp up to which it holds every id.
+     */
+    private record Snapshot(BloomFilter filter, long coveredUntil) {
+    }
+
+}
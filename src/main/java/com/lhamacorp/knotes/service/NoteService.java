@@ -7,17 +7,34 @@ import com.lhamacorp.knotes.context.UserContextHolder;
 import com.lhamacorp.knotes.domain.EncryptionMode;
 import com.lhamacorp.knotes.domain.Note;
 import com.lhamacorp.knotes.exception.BadRequestException;
+import com.lhamacorp.knotes.exception.ConflictException;
 import com.lhamacorp.knotes.exception.UnauthorizedException;
 import com.lhamacorp.knotes.repository.NoteRepository;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static com.github.f4b6a3.ulid.UlidCreator.getUlid;
 import static com.lhamacorp.knotes.api.dto.NoteMetadata.from;
+import static com.lhamacorp.knotes.config.CacheConfig.CONTENT;
+import static com.lhamacorp.knotes.config.CacheConfig.DECODED;
+import static com.lhamacorp.knotes.config.CacheConfig.METADATA;
+import static com.lhamacorp.knotes.config.CacheConfig.MISSING;
 import static com.lhamacorp.knotes.domain.EncryptionMode.PRIVATE;
 import static com.lhamacorp.knotes.domain.EncryptionMode.PUBLIC;
 import static com.lhamacorp.knotes.domain.Note.ANONYMOUS;
@@ -28,56 +45,206 @@ import static java.util.Collections.emptyList;
 public class NoteService {
 
     private final NoteRepository repository;
+    private final CacheManager cacheManager;
+    private final NoteIdFilter idFilter;
+    private final NoteWriteBuffer writeBuffer;
 
     private static final String NOT_FOUND = "Note not found!";
 
-    public NoteService(NoteRepository repository) {
+    public NoteService(NoteRepository repository, CacheManager cacheManager, NoteIdFilter idFilter, NoteWriteBuffer writeBuffer) {
         this.repository = repository;
+        this.cacheManager = cacheManager;
+        this.idFilter = idFilter;
+        this.writeBuffer = writeBuffer;
     }
 
+    /**
+     * Checks whether a note exists. Ids the id filter rules out, and recent misses,
+     * are answered without querying Mongo.
+     */
     public boolean exists(String id) {
-        return repository.existsById(id);
+        if (!idFilter.mightContain(id) || cached(MISSING, id, Boolean.class) != null) {
+            return false;
+        }
+
+        boolean exists = repository.existsById(id);
+        if (!exists) {
+            put(MISSING, id, Boolean.TRUE);
+        }
+        return exists;
     }
 
     public Note get(String id) {
+        Note pending = writeBuffer.pending(id);
+        if (pending != null) {
+            return pending;
+        }
+
         return repository.findById(id).orElseThrow(() -> new BadRequestException("Note not found"));
     }
 
+    /**
+     * Lists the ids of all the current user's notes in ULID order.
+     */
     public List<String> findAll() {
+        return findIds("", Limit.unlimited());
+    }
+
+    /**
+     * Lists the ids of the current user's notes in ULID order, one page at a time.
+     * Only {@code _id} is fetched, and the page starts right after {@code cursor},
+     * which is the last id of the previous page.
+     */
+    public List<String> findAll(String cursor, int limit) {
+        return findIds(cursor != null ? cursor : "", Limit.of(limit));
+    }
+
+    private List<String> findIds(String cursor, Limit limit) {
+        UserContext user = UserContextHolder.get();
+        if (ANONYMOUS.equals(user.id())) {
+            return emptyList();
+        }
+
+        writeBuffer.flushOwnedBy(user.id());
+
+        return repository.findIdsByCreatedBy(user.id(), cursor, limit)
+                .stream().map(Note::id).toList();
+    }
+
+    /**
+     * Prepares a stream of the metadata of the current user's notes in ULID order, starting
+     * right after {@code cursor} and optionally limited to notes modified since
+     * {@code modifiedSince}. The user is resolved here, so this must run on the request thread;
+     * the returned supplier can run on any thread. Each stream it opens holds a Mongo cursor and
+     * must be closed by the caller.
+     */
+    public Supplier<Stream<NoteMetadata>> streamMetadata(String cursor, int limit, Instant modifiedSince) {
         UserContext user = UserContextHolder.get();
-        return ANONYMOUS.equals(user.id())
-                ? emptyList()
-                : repository.findAllByCreatedBy(user.id()).stream().map(Note::id).toList();
+        if (ANONYMOUS.equals(user.id())) {
+            return Stream::empty;
+        }
+
+        // the query filters on modifiedAt, so buffered updates must be visible to it
+        writeBuffer.flushOwnedBy(user.id());
+
+        String owner = user.id();
+        return () -> repository.streamMetadataByCreatedBy(owner, cursor != null ? cursor : "",
+                        modifiedSince != null ? modifiedSince : Instant.EPOCH, Limit.of(limit))
+                .map(NoteMetadata::from);
     }
 
-    @Cacheable(value = "content", key = "#id")
+    @Cacheable(value = CONTENT, key = "#id", sync = true)
     public Note findById(String id) {
+        Note pending = writeBuffer.pending(id);
+        if (pending != null) {
+            return pending;
+        }
+
         return repository.findById(id)
                 .orElseThrow(() -> new BadRequestException(NOT_FOUND));
     }
 
-    @Cacheable(value = "metadata", key = "#id")
+    /**
+     * Loads several notes at once, in the order of {@code ids}. Notes already in the content
+     * cache are served from it, the rest are fetched with a single {@code $in} query and written
+     * back to the cache. Ids that do not exist are skipped.
+     */
+    public List<Note> findAllById(Collection<String> ids) {
+        Map<String, Note> found = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+
+        for (String id : ids) {
+            Note cached = writeBuffer.pending(id);
+            if (cached == null) {
+                cached = cached(CONTENT, id, Note.class);
+            }
+            if (cached != null) {
+                found.put(id, cached);
+            } else {
+                misses.add(id);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            writeBuffer.flush(misses);
+            for (Note note : repository.findAllById(misses)) {
+                found.put(note.id(), note);
+                putNewer(CONTENT, note.id(), note);
+            }
+        }
+
+        return ids.stream().map(found::get).filter(Objects::nonNull).toList();
+    }
+
+    @Cacheable(value = METADATA, key = "#id", sync = true)
     public NoteMetadata findMetadataById(String id) {
+        Note cached = writeBuffer.pending(id);
+        if (cached == null) {
+            cached = cached(CONTENT, id, Note.class);
+        }
+        if (cached != null) {
+            return from(cached);
+        }
+
         Note noteProjection = repository.findMetadataById(id)
                 .orElseThrow(() -> new BadRequestException(NOT_FOUND));
         return from(noteProjection);
     }
 
+    /**
+     * Returns the decoded content of a PUBLIC note, served from the decoded-content cache
+     * when the cached entry belongs to the same content of the note.
+     */
+    public String publicContent(Note note) {
+        String key = decodedKey(note);
+        String content = cached(DECODED, key, String.class);
+
+        if (content == null) {
+            content = note.content();
+            if (content != null) {
+                put(DECODED, key, content);
+            }
+        }
+
+        return content;
+    }
+
     public Note save(String content, EncryptionMode encryptionMode) {
         Ulid id = getUlid();
         UserContext user = UserContextHolder.get();
         Instant now = now();
 
-        return repository.save(new Note(id.toString(), content, user.id(), now, now, encryptionMode, null));
+        Note saved = repository.save(new Note(id.toString(), content, user.id(), now, now, encryptionMode, null));
+        idFilter.add(saved.id());
+        cache(saved, content);
+        return saved;
     }
 
-    @CacheEvict(value = {"content", "metadata"}, key = "#id")
-    public Note update(String id, String content, EncryptionMode encryptionMode, String password) {
-        Note existingNote = repository.findById(id).orElseThrow(() -> new BadRequestException(NOT_FOUND));
+    /**
+     * Replaces the content of a note in a single conditional write. The ownership and encryption
+     * mode are taken from the (usually cached) metadata and re-checked by the write itself, so no
+     * read of the full note is needed. With the write buffer enabled, the first buffered update of
+     * a note is based on metadata read from Mongo instead, as its conflicts would only surface on
+     * flush.
+     *
+     * @param expectedVersion the version the caller last saw, or {@code null} to overwrite unconditionally
+     * @throws ConflictException when the note is no longer at {@code expectedVersion}
+     */
+    public Note update(String id, String content, EncryptionMode encryptionMode, String password, Long expectedVersion) {
         UserContext user = UserContextHolder.get();
-
-        if (existingNote.encryptionMode() == PRIVATE && !existingNote.createdBy().equals(user.id())) {
-            throw new UnauthorizedException("Not authorized to update this content");
+        Note pending = writeBuffer.pending(id);
+        NoteMetadata current;
+        if (pending != null) {
+            current = from(pending);
+        } else if (writeBuffer.enabled()) {
+            // a buffered update is only checked against Mongo when it is flushed, long after the
+            // client was answered, so it must not be based on metadata another replica has outdated
+            current = latestMetadata(id);
+        } else {
+            current = cached(METADATA, id, NoteMetadata.class);
+            if (current == null) {
+                current = latestMetadata(id);
+            }
         }
 
         if (ANONYMOUS.equals(user.id())) {
@@ -85,22 +252,186 @@ public class NoteService {
             password = null;
         }
 
-        if (encryptionMode == null) {
-            encryptionMode = existingNote.encryptionMode();
+        if (current.encryptionMode() == PRIVATE && !current.createdBy().equals(user.id())) {
+            throw new UnauthorizedException("Not authorized to update this content");
+        }
+
+        if (writeBuffer.enabled()) {
+            return buffer(id, content, encryptionMode, password, expectedVersion, current, user.id());
         }
 
-        return repository.save(new Note(id, content, existingNote.createdBy(), existingNote.createdAt(), now(), encryptionMode, password));
+        for (int attempt = 0; ; attempt++) {
+            EncryptionMode mode = encryptionMode != null ? encryptionMode : current.encryptionMode();
+            Note replacement = new Note(id, content, current.createdBy(), current.createdAt(), now(), mode, password);
+
+            Note saved;
+            try {
+                saved = repository.updateIfUnchanged(replacement, current.encryptionMode(), user.id(), expectedVersion);
+            } catch (RuntimeException e) {
+                // the write may or may not have been applied, so drop anything that could be stale
+                evict(id);
+                throw e;
+            }
+
+            if (saved != null) {
+                cache(saved, content);
+                return saved;
+            }
+
+            // the write did not match: tell a stale version apart from stale cached metadata
+            NoteMetadata latest = latestMetadata(id);
+            putNewer(METADATA, id, latest);
+
+            if (latest.encryptionMode() == PRIVATE && !latest.createdBy().equals(user.id())) {
+                throw new UnauthorizedException("Not authorized to update this content");
+            }
+            if (expectedVersion != null && !expectedVersion.equals(latest.version())) {
+                throw new ConflictException("Note was modified concurrently", latest);
+            }
+            if (attempt > 0) {
+                throw new ConflictException("Note is being modified concurrently", latest);
+            }
+
+            current = latest;
+        }
     }
 
-    @CacheEvict(value = {"content", "metadata"}, key = "#id")
+    /**
+     * Accepts an update into the write buffer. The new content is encoded right away and
+     * served to readers until the buffer writes it to Mongo.
+     */
+    private Note buffer(String id, String content, EncryptionMode encryptionMode, String password, Long expectedVersion, NoteMetadata current, String userId) {
+        Note buffered = writeBuffer.put(id, current, userId, expectedVersion, base -> new Note(id, content, base.createdBy(),
+                base.createdAt(), now(), encryptionMode != null ? encryptionMode : base.encryptionMode(), password));
+
+        // a concurrent update may already have replaced it, readers then get that one from the buffer
+        if (writeBuffer.pending(id) == buffered) {
+            cache(buffered, content);
+        } else {
+            evict(id);
+        }
+        return buffered;
+    }
+
+    @CacheEvict(value = {CONTENT, METADATA}, key = "#id")
     public void delete(String id) {
+        writeBuffer.flush(List.of(id));
         Note note = repository.findById(id).orElseThrow(() -> new BadRequestException("Note not found"));
         String userId = UserContextHolder.get().id();
 
         if (note.createdBy().equals(userId)) {
+            writeBuffer.discard(note.id());
             repository.deleteById(note.id());
+
+            // entries of earlier revisions are keyed by hashes nothing asks for anymore and expire
+            Cache decoded = cacheManager.getCache(DECODED);
+            if (decoded != null) {
+                decoded.evict(decodedKey(note));
+            }
+        }
+
+    }
+
+    /**
+     * Writes a freshly saved note through to the caches, so the next read does not go to Mongo.
+     */
+    private void cache(Note note, String content) {
+        if (note == null) {
+            return;
+        }
+
+        putNewer(CONTENT, note.id(), note);
+        putNewer(METADATA, note.id(), from(note));
+
+        if (note.encryptionMode() == PUBLIC && content != null) {
+            put(DECODED, decodedKey(note), content);
+        }
+    }
+
+    private NoteMetadata latestMetadata(String id) {
+        return repository.findMetadataById(id)
+                .map(NoteMetadata::from)
+                .orElseThrow(() -> {
+                    evict(id);
+                    return new BadRequestException(NOT_FOUND);
+                });
+    }
+
+    private void evict(String id) {
+        Cache content = cacheManager.getCache(CONTENT);
+        Cache metadata = cacheManager.getCache(METADATA);
+
+        if (content != null) {
+            content.evict(id);
         }
+        if (metadata != null) {
+            metadata.evict(id);
+        }
+    }
+
+    private void put(String cacheName, String key, Object value) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.put(key, value);
+        }
+    }
+
+    /**
+     * Caches a revision of a note only when it is newer than the cached one. Concurrent writes can
+     * return in either order, so a plain put could leave an older revision cached, with an ETag
+     * that no longer matches. When the cached revision is not older the entry is dropped instead,
+     * and the next read goes to Mongo.
+     */
+    private void putNewer(String cacheName, String id, Object revision) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null) {
+            return;
+        }
+
+        ConcurrentMap<Object, Object> entries = entries(cache);
+        if (entries == null) {
+            cache.evict(id);
+            return;
+        }
+
+        long version = versionOf(revision);
+        entries.compute(id, (key, cached) -> cached == null || versionOf(cached) < version ? revision : null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ConcurrentMap<Object, Object> entries(Cache cache) {
+        if (cache instanceof CaffeineCache caffeine) {
+            return caffeine.getNativeCache().asMap();
+        }
+        return cache.getNativeCache() instanceof ConcurrentMap<?, ?> map ? (ConcurrentMap<Object, Object>) map : null;
+    }
+
+    private static long versionOf(Object revision) {
+        Long version = null;
+        if (revision instanceof Note note) {
+            version = note.version();
+        } else if (revision instanceof NoteMetadata metadata) {
+            version = metadata.version();
+        }
+        return version != null ? version : 0L;
+    }
+
+    private static String decodedKey(Note note) {
+        return decodedKey(note.id(), note.contentHash(), note.modifiedAt());
+    }
+
+    /**
+     * Keys decoded content by the hash of the stored content, which is the same whether the note
+     * was written through or read back from Mongo. Notes saved before hashes were stored fall
+     * back to their modification time, at the millisecond precision Mongo keeps.
+     */
+    static String decodedKey(String id, String contentHash, Instant modifiedAt) {
+        return id + "@" + (contentHash != null ? contentHash : modifiedAt != null ? modifiedAt.toEpochMilli() : null);
+    }
 
+    private <T> T cached(String cacheName, String key, Class<T> type) {
+        Cache cache = cacheManager.getCache(cacheName);
+        return cache != null ? cache.get(key, type) : null;
     }
 
 }
@@ -0,0 +1,304 @@
+package com.lhamacorp.knotes.service;
+
+import com.lhamacorp.knotes.api.dto.NoteMetadata;
+import com.lhamacorp.knotes.domain.EncryptionMode;
+import com.lhamacorp.knotes.domain.Note;
+import com.lhamacorp.knotes.exception.ConflictException;
+import com.lhamacorp.knotes.exception.UnauthorizedException;
+import com.mongodb.bulk.BulkWriteError;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static com.lhamacorp.knotes.config.CacheConfig.CONTENT;
+import static com.lhamacorp.knotes.config.CacheConfig.METADATA;
+import static com.lhamacorp.knotes.config.IndexConfig.NOTES;
+import static com.lhamacorp.knotes.domain.EncryptionMode.PRIVATE;
+import static com.lhamacorp.knotes.repository.NoteRepositoryCustom.replaceContent;
+import static com.lhamacorp.knotes.repository.NoteRepositoryCustom.unchanged;
+import static org.slf4j.LoggerFactory.getLogger;
+import static org.springframework.data.mongodb.core.BulkOperations.BulkMode.UNORDERED;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Opt-in write-behind buffer for note updates.
+ *
+ * <p>While enabled, updates are held in memory and flushed once per window as a single unordered
+ * bulk write, so an autosave burst on one note turns into one Mongo write. A newer update of the
+ * same note replaces the pending one, and the version is advanced by the number of updates it
+ * absorbed. Pending notes are served to readers until they are written, reads that go to Mongo
+ * directly flush first, and everything still pending is flushed on shutdown.</p>
+ *
+ * <p>Updates are accepted against the pending version of the note, or the stored one when nothing
+ * is pending, atomically per note. Each flush carries the same conditions as
+ * {@link com.lhamacorp.knotes.repository.NoteRepositoryCustom#updateIfUnchanged}: the stored
+ * note must still be at the version, mode and owner the first pending update was based on. An
+ * entry that no longer matches was overtaken by another writer, for instance on another replica;
+ * it is dropped as a conflict and the note is evicted from the caches. Entries that fail to write
+ * are retried on the next flush, up to {@value #MAX_ATTEMPTS} times.</p>
+ */
+@Component
+public class NoteWriteBuffer {
+
+    private static final Logger log = getLogger(NoteWriteBuffer.class);
+    private static final String WINDOW = "${notes.write-buffer.window:PT2S}";
+    private static final int MAX_ATTEMPTS = 5;
+
+    private final MongoTemplate mongoTemplate;
+    private final CacheManager cacheManager;
+    private final boolean enabled;
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+
+    private final Counter coalesced = Metrics.counter("knotes.notes.write-buffer.coalesced");
+    private final Counter flushed = Metrics.counter("knotes.notes.write-buffer.flushed");
+    private final Counter conflicts = Metrics.counter("knotes.notes.write-buffer.conflicts");
+    private final Counter dropped = Metrics.counter("knotes.notes.write-buffer.dropped");
+
+    public NoteWriteBuffer(MongoTemplate mongoTemplate,
+                           CacheManager cacheManager,
+                           @Value("${notes.write-buffer.enabled:false}") boolean enabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.cacheManager = cacheManager;
+        this.enabled = enabled;
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the pending version of the note, or {@code null} when nothing is waiting to be written
+     */
+    public Note pending(String id) {
+        Pending entry = pending.get(id);
+        return entry != null ? entry.note() : null;
+    }
+
+    /**
+     * Accepts an update of a note. The ownership and version checks and the merge with a pending
+     * update happen atomically, so concurrent updates of the same note are applied one after the
+     * other.
+     *
+     * @param stored          metadata of the stored note, used when nothing is pending for it; read
+     *                        from Mongo rather than the metadata cache, since a stale base is only
+     *                        found out on flush, after the update was acknowledged
+     * @param userId          the user making the update
+     * @param expectedVersion the version the caller last saw, or {@code null} to overwrite unconditionally
+     * @param update          builds the new note from the metadata of the revision it replaces
+     * @return the pending note, at the next version
+     * @throws ConflictException when the note is no longer at {@code expectedVersion}
+     */
+    public Note put(String id, NoteMetadata stored, String userId, Long expectedVersion, Function<NoteMetadata, Note> update) {
+        Pending entry = pending.compute(id, (key, previous) -> {
+            NoteMetadata base = previous != null ? NoteMetadata.from(previous.note()) : stored;
+
+            if (base.encryptionMode() == PRIVATE && !base.createdBy().equals(userId)) {
+                throw new UnauthorizedException("Not authorized to update this content");
+            }
+            if (expectedVersion != null && !expectedVersion.equals(base.version())) {
+                throw new ConflictException("Note was modified concurrently", base);
+            }
+
+            Note note = update.apply(base).withVersion(base.version() + 1);
+            if (previous == null) {
+                return new Pending(note, 1, stored.version(), stored.encryptionMode(), 0);
+            }
+
+            coalesced.increment();
+            return new Pending(note, previous.updates() + 1, previous.baseVersion(), previous.expectedMode(), previous.attempts());
+        });
+
+        return entry.note();
+    }
+
+    /**
+     * Drops a pending update, for notes that are about to be deleted.
+     */
+    public void discard(String id) {
+        pending.remove(id);
+    }
+
+    /**
+     * Writes the pending updates of the given notes, before they are read from Mongo directly.
+     */
+    public synchronized void flush(Collection<String> ids) {
+        List<Pending> entries = ids.stream().map(pending::get).filter(Objects::nonNull).toList();
+        if (!entries.isEmpty()) {
+            write(entries);
+        }
+    }
+
+    /**
+     * Writes the pending updates of a user's notes, before they are listed from Mongo.
+     */
+    public synchronized void flushOwnedBy(String userId) {
+        List<Pending> entries = pending.values().stream()
+                .filter(entry -> userId.equals(entry.note().createdBy()))
+                .toList();
+        if (!entries.isEmpty()) {
+            write(entries);
+        }
+    }
+
+    @Scheduled(fixedDelayString = WINDOW)
+    public synchronized void flush() {
+        if (!pending.isEmpty()) {
+            write(List.copyOf(pending.values()));
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        if (!pending.isEmpty()) {
+            log.info("Flushing [{}] pending note updates before shutdown", pending.size());
+            flush();
+        }
+    }
+
+    private void write(List<Pending> entries) {
+        BulkOperations bulk = mongoTemplate.bulkOps(UNORDERED, Note.class);
+
+        for (Pending entry : entries) {
+            Note note = entry.note();
+            // callers were checked against the owner when their update was accepted
+            Query unchanged = unchanged(note.id(), entry.expectedMode(), note.createdBy(), entry.baseVersion());
+            bulk.updateOne(unchanged, replaceContent(note).inc("version", entry.updates()));
+        }
+
+        Set<Integer> failed = new HashSet<>();
+        long matched;
+        try {
+            matched = bulk.execute().getMatchedCount();
+        } catch (BulkOperationException e) {
+            // the other entries of an unordered bulk were applied, only the failed ones stay pending
+            e.getErrors().stream().map(BulkWriteError::getIndex).forEach(failed::add);
+            matched = e.getResult().getMatchedCount();
+            log.error("Failed to flush [{}] of [{}] pending note updates: {}", failed.size(), entries.size(), e.getMessage());
+        } catch (RuntimeException e) {
+            // nothing is known about what was applied; the version condition makes a retry safe
+            log.error("Failed to flush [{}] pending note updates", entries.size(), e);
+            entries.forEach(this::retryOrDrop);
+            return;
+        }
+
+        List<Pending> written = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            if (failed.contains(i)) {
+                retryOrDrop(entries.get(i));
+            } else {
+                written.add(entries.get(i));
+            }
+        }
+
+        Set<String> overtaken = matched < written.size() ? overtaken(written) : Set.of();
+        for (Pending entry : written) {
+            if (overtaken.contains(entry.note().id())) {
+                conflict(entry);
+            } else {
+                applied(entry);
+            }
+        }
+    }
+
+    /**
+     * Finds the entries whose write did not match. An entry that is already in Mongo, written by
+     * an earlier attempt whose outcome was unknown, counts as applied.
+     */
+    private Set<String> overtaken(List<Pending> entries) {
+        Map<String, Pending> byId = new HashMap<>();
+        entries.forEach(entry -> byId.put(entry.note().id(), entry));
+
+        Query query = new Query(where("_id").in(byId.keySet()));
+        query.fields().include("version", "hash");
+
+        Set<String> overtaken = new HashSet<>(byId.keySet());
+        for (Document stored : mongoTemplate.find(query, Document.class, NOTES)) {
+            Pending entry = byId.get(stored.getString("_id"));
+            Number version = stored.get("version", Number.class);
+            boolean alreadyWritten = version != null
+                    && version.longValue() == entry.baseVersion() + entry.updates()
+                    && Objects.equals(stored.getString("hash"), entry.note().contentHash());
+
+            if (alreadyWritten) {
+                overtaken.remove(entry.note().id());
+            }
+        }
+
+        return overtaken;
+    }
+
+    private void applied(Pending entry) {
+        flushed.increment();
+
+        // keep anything that arrived while writing, rebased on the version just written
+        pending.computeIfPresent(entry.note().id(), (id, current) -> current == entry
+                ? null
+                : new Pending(current.note(), current.updates() - entry.updates(), entry.baseVersion() + entry.updates(),
+                        entry.note().encryptionMode(), current.attempts()));
+    }
+
+    private void conflict(Pending entry) {
+        conflicts.increment();
+        log.warn("Dropped buffered update of note [{}], it was changed by another writer", entry.note().id());
+
+        // updates that arrived since were based on the same outdated revision
+        pending.computeIfPresent(entry.note().id(), (id, current) -> null);
+        evict(entry.note().id());
+    }
+
+    private void retryOrDrop(Pending entry) {
+        pending.computeIfPresent(entry.note().id(), (id, current) -> {
+            if (current.attempts() + 1 < MAX_ATTEMPTS) {
+                return new Pending(current.note(), current.updates(), current.baseVersion(), current.expectedMode(), current.attempts() + 1);
+            }
+
+            dropped.increment();
+            log.error("Dropped buffered update of note [{}] after [{}] failed attempts", id, MAX_ATTEMPTS);
+            return null;
+        });
+
+        if (pending.get(entry.note().id()) == null) {
+            evict(entry.note().id());
+        }
+    }
+
+    private void evict(String id) {
+        for (String name : List.of(CONTENT, METADATA)) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache != null) {
+                cache.evict(id);
+            }
+        }
+    }
+
+    /**
+     * @param baseVersion  the stored version the first of the buffered updates was based on
+     * @param expectedMode the stored encryption mode the first of the buffered updates was based on
+     * @param attempts     failed writes so far
+     */
+    private record Pending(Note note, long updates, long baseVersion, EncryptionMode expectedMode, int attempts) {
+    }
+
+}
@@ -36,9 +36,12 @@ public class PinService {
             throw new BadRequestException("Note cannot be pinned");
         }
 
-        Ulid id = getUlid();
-
-        return repository.save(new Pin(id.toString(), note.id(), userId, now()));
+        // pins are unique per user and note, so pinning twice returns the existing pin
+        return repository.findByUserIdAndNoteId(userId, note.id())
+                .orElseGet(() -> {
+                    Ulid id = getUlid();
+                    return repository.save(new Pin(id.toString(), note.id(), userId, now()));
+                });
     }
 
     public void remove(String id, String userId) {
@@ -0,0 +1,162 @@
+package com.lhamacorp.knotes.util;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Scalable Bloom filter of strings.
+ *
+ * <p>The filter is a chain of fixed-size stages. When the newest stage reaches its capacity a
+ * new one is added with twice the capacity and half the false-positive rate, so the overall
+ * false-positive rate stays below twice the initial one no matter how many elements are added.
+ * There are no false negatives.</p>
+ *
+ * <p>Lookups and additions are lock-free; only adding a stage is synchronized.</p>
+ */
+public class BloomFilter {
+
+    private static final double LN2_SQUARED = Math.log(2) * Math.log(2);
+    private static final int GROWTH = 2;
+    private static final double TIGHTENING = 0.5;
+
+    private final List<Stage> stages = new CopyOnWriteArrayList<>();
+
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions < 1) {
+            throw new IllegalArgumentException("Expected insertions must be positive");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+        }
+
+        stages.add(new Stage(expectedInsertions, falsePositiveRate * (1 - TIGHTENING)));
+    }
+
+    public void add(String value) {
+        long[] hashes = hash(value);
+        Stage stage = stages.getLast();
+
+        if (stage.isFull()) {
+            stage = grow(stage);
+        }
+
+        stage.add(hashes);
+    }
+
+    public boolean mightContain(String value) {
+        long[] hashes = hash(value);
+
+        for (Stage stage : stages) {
+            if (stage.contains(hashes)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the approximate number of elements added, counting duplicates
+     */
+    public long size() {
+        return stages.stream().mapToLong(stage -> stage.count.get()).sum();
+    }
+
+    /**
+     * @return the memory used by the bit arrays, in bytes
+     */
+    public long sizeInBytes() {
+        return stages.stream().mapToLong(stage -> stage.bits.length() * (long) Long.BYTES).sum();
+    }
+
+    private synchronized Stage grow(Stage full) {
+        Stage last = stages.getLast();
+        if (last != full) {
+            return last;
+        }
+
+        Stage next = new Stage(full.capacity * GROWTH, full.falsePositiveRate * TIGHTENING);
+        stages.add(next);
+        return next;
+    }
+
+    /**
+     * Two independent 64-bit hashes of the UTF-8 bytes, combined by double hashing into the
+     * probe positions of each stage.
+     */
+    private static long[] hash(String value) {
+        byte[] bytes = value.getBytes(UTF_8);
+
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+
+        return new long[]{mix(h), mix(h ^ 0x9e3779b97f4a7c15L) | 1};
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static final class Stage {
+
+        private final long capacity;
+        private final double falsePositiveRate;
+        private final long bitCount;
+        private final int hashCount;
+        private final AtomicLongArray bits;
+        private final AtomicLong count = new AtomicLong();
+
+        private Stage(long capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            this.falsePositiveRate = falsePositiveRate;
+
+            long optimalBits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / LN2_SQUARED);
+            int words = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (optimalBits + 63) / 64));
+
+            this.bits = new AtomicLongArray(words);
+            this.bitCount = words * 64L;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+        }
+
+        private boolean isFull() {
+            return count.get() >= capacity;
+        }
+
+        private void add(long[] hashes) {
+            for (int i = 0; i < hashCount; i++) {
+                long bit = index(hashes, i);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+
+                long current = bits.get(word);
+                while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                    current = bits.get(word);
+                }
+            }
+            count.incrementAndGet();
+        }
+
+        private boolean contains(long[] hashes) {
+            for (int i = 0; i < hashCount; i++) {
+                long bit = index(hashes, i);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private long index(long[] hashes, int i) {
+            return Math.floorMod(hashes[0] + i * hashes[1], bitCount);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.lhamacorp.knotes.util;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Consecutive-failure circuit breaker.
+ *
+ * <p>Opens after {@code failureThreshold} failures in a row and rejects calls for
+ * {@code openDuration}. After that a single probe call is let through: its success closes the
+ * breaker, its failure opens it again. Callers must report the outcome of every permitted call
+ * through {@link #onSuccess()} or {@link #onFailure()}.</p>
+ */
+public class CircuitBreaker {
+
+    public enum State {CLOSED, HALF_OPEN, OPEN}
+
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final Clock clock;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private Instant openedAt;
+    private boolean probing;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration, Clock clock) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold must be positive");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.clock = clock;
+    }
+
+    /**
+     * @return whether the call may go ahead
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && !clock.instant().isBefore(openedAt.plus(openDuration))) {
+            state = State.HALF_OPEN;
+        }
+
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (probing) {
+                    yield false;
+                }
+                probing = true;
+                yield true;
+            }
+        };
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+        probing = false;
+        openedAt = null;
+    }
+
+    public synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = clock.instant();
+            probing = false;
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    public synchronized int failures() {
+        return failures;
+    }
+
+    /**
+     * @return when the breaker last opened, or {@code null} while it is closed
+     */
+    public synchronized Instant openedAt() {
+        return openedAt;
+    }
+
+}
@@ -1,44 +1,121 @@
 package com.lhamacorp.knotes.util;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import com.lhamacorp.knotes.util.codec.CodecContext;
+import com.lhamacorp.knotes.util.codec.CompressionCodec;
+import com.lhamacorp.knotes.util.codec.CompressionCodecs;
+import com.lhamacorp.knotes.util.codec.CompressionDictionaries;
+import io.micrometer.core.instrument.Metrics;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 /**
- * Utility class for GZIP compression and decompression of text content.
+ * Utility class for compression and decompression of text content.
  * Provides transparent compression for content content to reduce database storage size.
+ *
+ * <p>Payloads are self-describing (see {@link CompressionCodec}), so content written with
+ * any codec, including legacy untagged GZIP, can always be decompressed. New content is
+ * written with the codec configured through the {@code knotes.compression.codec} system
+ * property or the {@code compression_codec} environment variable, defaulting to GZIP.</p>
+ *
+ * <p>Small content (up to {@value #SMALL_CONTENT_LENGTH} characters) that is encrypted before
+ * it is stored is compressed with the current preset dictionary when one is bundled, falling
+ * back to storing it uncompressed when even that would grow it. GZIP headers alone would
+ * otherwise dominate those payloads. Content stored in the clear keeps the default codec, so
+ * GZIP payloads can still be served as-is however small they are.</p>
+ *
+ * <p>Compression state comes from pooled {@link CodecContext} instances, so the hot path
+ * reuses native Deflater/Inflater state and scratch buffers instead of allocating streams.</p>
  */
 public class CompressionUtils {
 
+    private static final int GZIP_HEADER_LENGTH = 10;
+    private static final int SMALL_CONTENT_LENGTH = 1024;
+    private static final CompressionCodec DEFAULT_CODEC = configuredCodec();
+
     /**
-     * Compresses a string using GZIP compression.
+     * Compresses a string using the configured default codec.
      *
      * @param input the string to compress
-     * @return compressed byte array, or null if input is null/empty
+     * @return compressed byte array, or an empty array if input is null/empty
      * @throws RuntimeException if compression fails
      */
     public static byte[] compress(String input) {
-        if (input == null || input.isEmpty()) {
+        return compress(input, DEFAULT_CODEC);
+    }
+
+    /**
+     * Compresses a string that is encrypted afterwards, and so never served as-is, using the
+     * dictionary codec for small content and the configured default codec otherwise.
+     *
+     * @param input the string to compress
+     * @return compressed byte array, or an empty array if input is null/empty
+     * @throws RuntimeException if compression fails
+     */
+    public static byte[] compressForEncryption(String input) {
+        if (CompressionDictionaries.bundled().current() == null) {
+            return compress(input, DEFAULT_CODEC);
+        }
+        return compressSmall(input, CompressionCodecs.DICTIONARY);
+    }
+
+    /**
+     * Compresses small content with the given dictionary codec, or stored when that is smaller.
+     */
+    static byte[] compressSmall(String input, CompressionCodec dictionary) {
+        if (input == null || input.length() > SMALL_CONTENT_LENGTH) {
+            return compress(input, DEFAULT_CODEC);
+        }
+
+        if (input.isEmpty()) {
             return new byte[0];
         }
 
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             GZIPOutputStream gzip = new GZIPOutputStream(baos)) {
+        try (CodecContext context = CodecContext.acquire()) {
+            CompressionCodec codec = dictionary;
+            byte[] compressed = codec.compress(input, context);
+
+            if (compressed.length > CodecContext.utf8Length(input)) {
+                byte[] stored = CompressionCodecs.STORED.compress(input, context);
+                if (stored.length < compressed.length) {
+                    codec = CompressionCodecs.STORED;
+                    compressed = stored;
+                }
+            }
+
+            record(codec, input, compressed);
+            return compressed;
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Failed to compress text content", e);
+        }
+    }
 
-            gzip.write(input.getBytes(StandardCharsets.UTF_8));
-            gzip.close();
+    /**
+     * Compresses a string using the given codec.
+     *
+     * @param input the string to compress
+     * @param codec the codec to encode with
+     * @return compressed byte array, or an empty array if input is null/empty
+     * @throws RuntimeException if compression fails
+     */
+    public static byte[] compress(String input, CompressionCodec codec) {
+        if (input == null || input.isEmpty()) {
+            return new byte[0];
+        }
 
-            return baos.toByteArray();
-        } catch (IOException e) {
+        try (CodecContext context = CodecContext.acquire()) {
+            byte[] compressed = codec.compress(input, context);
+            record(codec, input, compressed);
+            return compressed;
+        } catch (RuntimeException e) {
             throw new RuntimeException("Failed to compress text content", e);
         }
     }
 
     /**
-     * Decompresses a GZIP compressed byte array back to a string.
+     * Decompresses a byte array written by any codec back to a string.
      *
      * @param compressed the compressed byte array
      * @return decompressed string, or empty string if input is null/empty
@@ -49,22 +126,60 @@ public class CompressionUtils {
             return "";
         }
 
-        try (ByteArrayInputStream bais = new ByteArrayInputStream(compressed);
-             GZIPInputStream gzip = new GZIPInputStream(bais);
-             ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+        try (CodecContext context = CodecContext.acquire()) {
+            ByteBuffer bytes = CompressionCodecs.forPayload(compressed).decompress(compressed, context);
+            return new String(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining(), StandardCharsets.UTF_8);
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Failed to decompress text content", e);
+        }
+    }
 
-            byte[] buffer = new byte[1024];
-            int len;
-            while ((len = gzip.read(buffer)) > 0) {
-                baos.write(buffer, 0, len);
-            }
+    /**
+     * Opens an incremental decoder over a byte array written by any codec, so large content
+     * can be consumed without materializing it as a single string.
+     *
+     * @param compressed the compressed byte array
+     * @return a stream of the UTF-8 content; the caller must close it
+     * @throws RuntimeException if the payload cannot be decoded
+     */
+    public static InputStream openStream(byte[] compressed) {
+        if (compressed == null || compressed.length == 0) {
+            return InputStream.nullInputStream();
+        }
 
-            return baos.toString(StandardCharsets.UTF_8);
-        } catch (IOException e) {
+        try {
+            return CompressionCodecs.forPayload(compressed).openStream(compressed);
+        } catch (RuntimeException e) {
             throw new RuntimeException("Failed to decompress text content", e);
         }
     }
 
+    /**
+     * Returns the codec that wrote the given payload.
+     *
+     * @param compressed the compressed byte array
+     * @return the codec, or null if the input is null/empty
+     */
+    public static CompressionCodec codecOf(byte[] compressed) {
+        if (compressed == null || compressed.length == 0) {
+            return null;
+        }
+        return CompressionCodecs.forPayload(compressed);
+    }
+
+    /**
+     * Checks whether the given bytes form a GZIP stream, so they can be served
+     * as-is with {@code Content-Encoding: gzip}.
+     *
+     * @param data the stored content bytes
+     * @return true if the data starts with the GZIP magic header
+     */
+    public static boolean isGzip(byte[] data) {
+        return data != null && data.length >= GZIP_HEADER_LENGTH
+                && (data[0] & 0xff) == (GZIPInputStream.GZIP_MAGIC & 0xff)
+                && (data[1] & 0xff) == (GZIPInputStream.GZIP_MAGIC >> 8);
+    }
+
     /**
      * Calculates the compression ratio as a percentage.
      *
@@ -76,4 +191,20 @@ public class CompressionUtils {
         if (originalSize == 0) return 0.0;
         return 1.0 - ((double) compressedSize / originalSize);
     }
-}
\ No newline at end of file
+
+    private static void record(CompressionCodec codec, String input, byte[] compressed) {
+        Metrics.counter("knotes.compression.input.bytes", "codec", codec.name()).increment(CodecContext.utf8Length(input));
+        Metrics.counter("knotes.compression.output.bytes", "codec", codec.name()).increment(compressed.length);
+    }
+
+    private static CompressionCodec configuredCodec() {
+        String codec = System.getProperty("knotes.compression.codec");
+        if (codec == null) {
+            codec = System.getenv("compression_codec");
+        }
+
+        return codec == null || codec.isBlank()
+                ? CompressionCodecs.GZIP
+                : CompressionCodecs.forName(codec);
+    }
+}
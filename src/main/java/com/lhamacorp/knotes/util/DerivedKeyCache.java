@@ -0,0 +1,105 @@
+package com.lhamacorp.knotes.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, time-limited cache of PBKDF2-derived encryption keys.
+ *
+ * <p>Entries are indexed by a SHA-256 hash of the key material together with the salt,
+ * so neither user ids nor passwords are retained in memory. Cached keys are zeroed when
+ * they are evicted, and callers always receive a copy. Copying and zeroing are serialized per
+ * entry, so a key evicted while it is being read is derived again rather than handed out
+ * zeroed.</p>
+ */
+public class DerivedKeyCache {
+
+    private static final long MAXIMUM_SIZE = 10_000;
+    private static final Duration EXPIRE_AFTER_WRITE = Duration.ofMinutes(10);
+
+    private static final Cache<String, DerivedKey> CACHE = Caffeine.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .expireAfterWrite(EXPIRE_AFTER_WRITE)
+            .removalListener((String key, DerivedKey value, RemovalCause cause) -> {
+                if (value != null) {
+                    value.destroy();
+                }
+            })
+            .recordStats()
+            .build();
+
+    /**
+     * Returns the cached key for the given material and salt, deriving it on a miss.
+     * Concurrent misses for the same entry run the derivation only once.
+     *
+     * @param keyMaterial the secret the key is derived from
+     * @param salt        the salt used for derivation
+     * @param derivation  computes the key when it is not cached
+     * @return a copy of the derived key
+     */
+    public static byte[] get(String keyMaterial, byte[] salt, Supplier<byte[]> derivation) {
+        String cacheKey = cacheKey(keyMaterial, salt);
+
+        while (true) {
+            byte[] key = CACHE.get(cacheKey, ignored -> new DerivedKey(derivation.get())).copy();
+            // null when the entry was evicted and zeroed in the meantime, the next get derives it again
+            if (key != null) {
+                return key;
+            }
+        }
+    }
+
+    /**
+     * Exposes the underlying cache so its statistics can be bound to metrics.
+     */
+    public static Cache<String, ?> cache() {
+        return CACHE;
+    }
+
+    public static void clear() {
+        CACHE.invalidateAll();
+    }
+
+    private static String cacheKey(String keyMaterial, byte[] salt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(keyMaterial.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(salt);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * A cached key, never handed out itself.
+     */
+    private static final class DerivedKey {
+
+        private final byte[] key;
+        private boolean destroyed;
+
+        private DerivedKey(byte[] key) {
+            this.key = key;
+        }
+
+        synchronized byte[] copy() {
+            return destroyed ? null : key.clone();
+        }
+
+        synchronized void destroy() {
+            Arrays.fill(key, (byte) 0);
+            destroyed = true;
+        }
+    }
+}
@@ -6,13 +6,18 @@ import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.security.SecureRandom;
+import java.util.Arrays;
 
 public class EncryptionUtils {
 
     private static final String CIPHER_ALGORITHM = "AES/GCM/NoPadding";
     private static final String KEY_ALGORITHM = "AES";
     private static final String KEY_DERIVATION_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String KEY_WRAP_ALGORITHM = "AESWrap";
+    private static final String USER_KEY_SALT_PREFIX = "knotes-kek:";
     private static final int IV_LENGTH = 12; // 96 bits for GCM
     private static final int GCM_TAG_LENGTH = 16; // 128 bits
     private static final int KEY_LENGTH = 256; // bits
@@ -128,6 +133,58 @@ public class EncryptionUtils {
         return deriveKey(password, salt);
     }
 
+    /**
+     * Derives the per-user key-encryption key used to wrap the data keys of PRIVATE notes.
+     * The salt is derived from the user id, so the key is stable across notes and is
+     * served from {@link DerivedKeyCache} after the first derivation.
+     */
+    public static byte[] deriveUserKey(String userId) {
+        if (userId == null || userId.isEmpty()) {
+            throw new IllegalArgumentException("User ID cannot be null or empty");
+        }
+
+        return deriveOwnerKey(userId, userKeySalt(userId));
+    }
+
+    public static byte[] generateDataKey() {
+        byte[] key = new byte[KEY_LENGTH / 8];
+        SECURE_RANDOM.nextBytes(key);
+        return key;
+    }
+
+    public static byte[] wrapKey(byte[] dataKey, byte[] keyEncryptionKey) {
+        if (dataKey == null || dataKey.length != KEY_LENGTH / 8
+                || keyEncryptionKey == null || keyEncryptionKey.length != KEY_LENGTH / 8) {
+            throw new IllegalArgumentException("Keys must be exactly 256 bits (32 bytes)");
+        }
+
+        try {
+            Cipher cipher = Cipher.getInstance(KEY_WRAP_ALGORITHM);
+            cipher.init(Cipher.WRAP_MODE, new SecretKeySpec(keyEncryptionKey, KEY_ALGORITHM));
+            return cipher.wrap(new SecretKeySpec(dataKey, KEY_ALGORITHM));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to wrap data key", e);
+        }
+    }
+
+    public static byte[] unwrapKey(byte[] wrappedKey, byte[] keyEncryptionKey) {
+        if (wrappedKey == null || wrappedKey.length == 0) {
+            throw new IllegalArgumentException("Wrapped key cannot be null or empty");
+        }
+
+        if (keyEncryptionKey == null || keyEncryptionKey.length != KEY_LENGTH / 8) {
+            throw new IllegalArgumentException("Key must be exactly 256 bits (32 bytes)");
+        }
+
+        try {
+            Cipher cipher = Cipher.getInstance(KEY_WRAP_ALGORITHM);
+            cipher.init(Cipher.UNWRAP_MODE, new SecretKeySpec(keyEncryptionKey, KEY_ALGORITHM));
+            return cipher.unwrap(wrappedKey, KEY_ALGORITHM, Cipher.SECRET_KEY).getEncoded();
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to unwrap data key", e);
+        }
+    }
+
     public static byte[] generateSalt() {
         byte[] salt = new byte[SALT_LENGTH];
         SECURE_RANDOM.nextBytes(salt);
@@ -135,6 +192,10 @@ public class EncryptionUtils {
     }
 
     private static byte[] deriveKey(String keyMaterial, byte[] salt) {
+        return DerivedKeyCache.get(keyMaterial, salt, () -> pbkdf2(keyMaterial, salt));
+    }
+
+    private static byte[] pbkdf2(String keyMaterial, byte[] salt) {
         try {
             PBEKeySpec spec = new PBEKeySpec(
                     keyMaterial.toCharArray(),
@@ -154,6 +215,16 @@ public class EncryptionUtils {
         }
     }
 
+    private static byte[] userKeySalt(String userId) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((USER_KEY_SALT_PREFIX + userId).getBytes(StandardCharsets.UTF_8));
+            return Arrays.copyOf(hash, SALT_LENGTH);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to derive user key salt", e);
+        }
+    }
+
     public static double getEncryptionOverhead(int originalSize, int encryptedSize) {
         if (originalSize == 0) return 0.0;
         return ((double) encryptedSize - originalSize) / originalSize;
@@ -0,0 +1,293 @@
+package com.lhamacorp.knotes.util.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static java.nio.charset.CodingErrorAction.REPLACE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Reusable compression state: a {@link Deflater}, an {@link Inflater}, a UTF-8 encoder
+ * and scratch buffers.
+ *
+ * <p>The state is kept in a bounded pool instead of thread locals, so it is reused the same way
+ * on platform and virtual threads. Each {@link #acquire()} hands out a new context that owns the
+ * state until its {@link #close()}; closing it again, or using it after closing, cannot touch the
+ * state once it was handed to the next caller. Output buffers that grew beyond
+ * {@value #MAX_RETAINED_BUFFER} bytes are dropped on release so large notes do not pin memory.</p>
+ */
+public final class CodecContext implements AutoCloseable {
+
+    private static final int CHUNK_SIZE = 8 * 1024;
+    private static final int INITIAL_OUTPUT_SIZE = 4 * 1024;
+    private static final int MAX_RETAINED_BUFFER = 256 * 1024;
+    private static final int MAX_DEFLATE_RATIO = 1032;
+
+    private static final BlockingQueue<State> POOL =
+            new ArrayBlockingQueue<>(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+
+    private State state;
+
+    private CodecContext(State state) {
+        this.state = state;
+    }
+
+    /**
+     * Takes state from the pool, or creates it when the pool is empty.
+     */
+    public static CodecContext acquire() {
+        State state = POOL.poll();
+        return new CodecContext(state != null ? state : new State());
+    }
+
+    /**
+     * Returns the state to the pool. Buffers handed out by this context must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        State released = state;
+        if (released == null) {
+            return;
+        }
+        state = null;
+
+        released.deflater.reset();
+        released.inflater.reset();
+        if (released.output.length > MAX_RETAINED_BUFFER) {
+            released.output = new byte[INITIAL_OUTPUT_SIZE];
+        }
+
+        if (!POOL.offer(released)) {
+            released.deflater.end();
+            released.inflater.end();
+        }
+    }
+
+    /**
+     * Encodes the input as UTF-8 in fixed-size chunks and feeds it straight into the deflater,
+     * writing the compressed stream into the output buffer starting at {@code offset}.
+     *
+     * @return the output position after the compressed stream
+     */
+    int deflate(CharSequence input, int level, byte[] dictionary, int offset) {
+        State s = state();
+        Deflater deflater = s.deflater;
+        ByteBuffer chunk = s.chunk;
+
+        deflater.reset();
+        deflater.setLevel(level);
+        if (dictionary != null) {
+            deflater.setDictionary(dictionary);
+        }
+        s.crc.reset();
+        s.encoder.reset();
+        s.ensureCapacity(offset + input.length() / 2 + 64);
+
+        CharBuffer chars = CharBuffer.wrap(input);
+        int position = offset;
+        boolean endOfInput = false;
+
+        while (!endOfInput) {
+            chunk.clear();
+            s.encoder.encode(chars, chunk, true);
+            endOfInput = !chars.hasRemaining();
+            if (endOfInput) {
+                s.encoder.flush(chunk);
+            }
+            chunk.flip();
+
+            s.crc.update(chunk.array(), 0, chunk.limit());
+            deflater.setInput(chunk.array(), 0, chunk.limit());
+            if (endOfInput) {
+                deflater.finish();
+            }
+
+            while (endOfInput ? !deflater.finished() : !deflater.needsInput()) {
+                if (position == s.output.length) {
+                    s.ensureCapacity(s.output.length * 2);
+                }
+                position += deflater.deflate(s.output, position, s.output.length - position);
+            }
+        }
+
+        return position;
+    }
+
+    /**
+     * Encodes the input as UTF-8 directly into the output buffer starting at {@code offset}.
+     *
+     * @return the output position after the encoded bytes
+     */
+    int encode(CharSequence input, int offset) {
+        State s = state();
+        s.encoder.reset();
+        s.ensureCapacity(offset + input.length());
+
+        CharBuffer chars = CharBuffer.wrap(input);
+        ByteBuffer target = ByteBuffer.wrap(s.output, offset, s.output.length - offset);
+        while (s.encoder.encode(chars, target, true).isOverflow()) {
+            int position = target.position();
+            s.ensureCapacity(s.output.length * 2);
+            target = ByteBuffer.wrap(s.output, position, s.output.length - position);
+        }
+        s.encoder.flush(target);
+
+        return target.position();
+    }
+
+    /**
+     * Inflates a raw Deflate stream into the output buffer, presized to the expected length.
+     *
+     * @return a view of the inflated bytes, valid until this context is closed
+     */
+    ByteBuffer inflate(byte[] payload, int offset, int length, int expectedLength, byte[] dictionary) throws DataFormatException {
+        State s = state();
+        Inflater inflater = s.inflater;
+
+        inflater.reset();
+        if (dictionary != null) {
+            // raw Deflate streams carry no dictionary id, so the dictionary is set up front
+            inflater.setDictionary(dictionary);
+        }
+        inflater.setInput(payload, offset, length);
+
+        long maximumLength = (long) length * MAX_DEFLATE_RATIO + 1;
+        s.ensureCapacity((int) Math.min(Math.max(expectedLength, 0) + 1L, maximumLength));
+
+        int position = 0;
+        while (!inflater.finished()) {
+            if (position == s.output.length) {
+                s.ensureCapacity(s.output.length * 2);
+            }
+
+            int inflated = inflater.inflate(s.output, position, s.output.length - position);
+            if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                throw new DataFormatException("Truncated compressed payload");
+            }
+            position += inflated;
+        }
+
+        return ByteBuffer.wrap(s.output, 0, position);
+    }
+
+    /**
+     * @return the CRC32 of the bytes consumed by the last {@link #deflate} call
+     */
+    int checksum() {
+        return (int) state().crc.getValue();
+    }
+
+    /**
+     * @return the CRC32 of the given bytes
+     */
+    int checksum(ByteBuffer bytes) {
+        CRC32 crc = state().crc;
+        crc.reset();
+        crc.update(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * @return the number of uncompressed bytes consumed by the last {@link #deflate} call
+     */
+    long bytesRead() {
+        return state().deflater.getBytesRead();
+    }
+
+    void put(int position, byte value) {
+        State s = state();
+        s.ensureCapacity(position + 1);
+        s.output[position] = value;
+    }
+
+    void putIntLE(int position, int value) {
+        State s = state();
+        s.ensureCapacity(position + 4);
+        s.output[position] = (byte) value;
+        s.output[position + 1] = (byte) (value >>> 8);
+        s.output[position + 2] = (byte) (value >>> 16);
+        s.output[position + 3] = (byte) (value >>> 24);
+    }
+
+    void put(int position, byte[] values) {
+        State s = state();
+        s.ensureCapacity(position + values.length);
+        System.arraycopy(values, 0, s.output, position, values.length);
+    }
+
+    /**
+     * @return a copy of the first {@code length} output bytes, sized exactly for storage
+     */
+    byte[] copy(int length) {
+        return Arrays.copyOf(state().output, length);
+    }
+
+    private State state() {
+        State s = state;
+        if (s == null) {
+            throw new IllegalStateException("Codec context is closed");
+        }
+        return s;
+    }
+
+    /**
+     * Computes the UTF-8 encoded length of the input without encoding it.
+     * Unpaired surrogates count as the single replacement byte written by the encoder.
+     */
+    public static int utf8Length(CharSequence input) {
+        int length = 0;
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < input.length() && Character.isLowSurrogate(input.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    static int readIntLE(byte[] data, int offset) {
+        return (data[offset] & 0xff)
+                | (data[offset + 1] & 0xff) << 8
+                | (data[offset + 2] & 0xff) << 16
+                | (data[offset + 3] & 0xff) << 24;
+    }
+
+    /**
+     * The pooled part of a context, owned by at most one open context at a time.
+     */
+    private static final class State {
+
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final Inflater inflater = new Inflater(true);
+        private final CRC32 crc = new CRC32();
+        private final CharsetEncoder encoder = UTF_8.newEncoder()
+                .onMalformedInput(REPLACE)
+                .onUnmappableCharacter(REPLACE);
+        private final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+
+        private byte[] output = new byte[INITIAL_OUTPUT_SIZE];
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > output.length) {
+                output = Arrays.copyOf(output, Math.max(capacity, output.length * 2));
+            }
+        }
+    }
+}
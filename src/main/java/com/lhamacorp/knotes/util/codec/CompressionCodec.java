@@ -0,0 +1,54 @@
+package com.lhamacorp.knotes.util.codec;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Compression codec used to encode note content for storage.
+ *
+ * <p>Every payload produced by a codec is self-describing: it starts with the codec
+ * {@link #tag()}, so stored content can always be decoded without knowing which codec
+ * was configured when it was written. GZIP payloads are identified by their own magic
+ * header, which keeps legacy untagged content readable.</p>
+ *
+ * <p>Codecs are stateless; all native compression state and scratch buffers come from
+ * the {@link CodecContext} passed in by the caller.</p>
+ */
+public interface CompressionCodec {
+
+    /**
+     * @return the codec name used in configuration and metrics
+     */
+    String name();
+
+    /**
+     * @return the leading byte that identifies payloads written by this codec
+     */
+    byte tag();
+
+    /**
+     * Encodes the given text as UTF-8 into a complete, self-describing payload.
+     *
+     * @param input   the text to compress
+     * @param context the codec context to use
+     * @return the encoded payload, including its header
+     */
+    byte[] compress(CharSequence input, CodecContext context);
+
+    /**
+     * Decodes a payload previously produced by {@link #compress(CharSequence, CodecContext)}.
+     *
+     * @param payload the encoded payload, including its header
+     * @param context the codec context to use
+     * @return a view of the UTF-8 bytes, valid until the context is closed
+     */
+    ByteBuffer decompress(byte[] payload, CodecContext context);
+
+    /**
+     * Opens an incremental decoder over a payload, for content too large to decode at once.
+     *
+     * @param payload the encoded payload, including its header
+     * @return a stream of the UTF-8 bytes; the caller must close it
+     */
+    InputStream openStream(byte[] payload);
+}
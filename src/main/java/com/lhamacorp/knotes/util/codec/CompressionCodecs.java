@@ -0,0 +1,67 @@
+package com.lhamacorp.knotes.util.codec;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.Deflater;
+
+/**
+ * Registry of the available compression codecs.
+ *
+ * <ul>
+ *   <li>{@link #GZIP} - default, legacy-compatible and servable as {@code Content-Encoding: gzip}</li>
+ *   <li>{@link #DEFLATE} - dense raw Deflate without GZIP header and trailer, for archival notes</li>
+ *   <li>{@link #FAST} - fastest Deflate level, for hot autosaved notes</li>
+ *   <li>{@link #STORED} - no compression</li>
+ *   <li>{@link #DICTIONARY} - Deflate with a preset dictionary, for small notes</li>
+ * </ul>
+ */
+public final class CompressionCodecs {
+
+    public static final CompressionCodec STORED = new StoredCodec();
+    public static final CompressionCodec DEFLATE = new DeflateCodec("DEFLATE", (byte) 0x02, Deflater.BEST_COMPRESSION);
+    public static final CompressionCodec FAST = new DeflateCodec("FAST", (byte) 0x03, Deflater.BEST_SPEED);
+    public static final CompressionCodec GZIP = new GzipCodec();
+    public static final CompressionCodec DICTIONARY = new DictionaryCodec(CompressionDictionaries.bundled());
+
+    private static final List<CompressionCodec> CODECS = List.of(GZIP, DEFLATE, FAST, STORED, DICTIONARY);
+
+    private CompressionCodecs() {
+    }
+
+    /**
+     * Creates a dictionary codec over other dictionaries than the bundled ones, for instance to
+     * evaluate a trained dictionary before publishing it. Its payloads are only decodable by a
+     * codec over the same dictionaries, not through {@link #forPayload}.
+     */
+    public static CompressionCodec dictionary(CompressionDictionaries dictionaries) {
+        return new DictionaryCodec(dictionaries);
+    }
+
+    /**
+     * Resolves a codec by its configured name.
+     *
+     * @throws IllegalArgumentException if no codec has that name
+     */
+    public static CompressionCodec forName(String name) {
+        String normalized = name.trim().toUpperCase(Locale.ROOT);
+        return CODECS.stream()
+                .filter(codec -> codec.name().equals(normalized))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown compression codec: " + name));
+    }
+
+    /**
+     * Resolves the codec that wrote the given payload from its leading byte.
+     *
+     * @throws IllegalArgumentException if the payload has an unknown tag
+     */
+    public static CompressionCodec forPayload(byte[] payload) {
+        byte tag = payload[0];
+        for (CompressionCodec codec : CODECS) {
+            if (codec.tag() == tag) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException("Unknown compression codec tag: " + (tag & 0xff));
+    }
+}
@@ -0,0 +1,82 @@
+package com.lhamacorp.knotes.util.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Registry of versioned preset dictionaries.
+ *
+ * <p>Dictionaries are named {@code v1.dict}, {@code v2.dict} and so on, and are loaded in
+ * order until a version is missing. New content is compressed with the highest version,
+ * while every older version stays registered so existing payloads remain decodable.</p>
+ *
+ * <p>The {@link #bundled()} registry is loaded from {@code /compression/dictionaries} and backs
+ * {@link CompressionCodecs#DICTIONARY}. Dictionaries are trained offline from real notes with
+ * the {@code trainDictionary} task; a published version must never be modified or removed.
+ * Until one is bundled, small content falls back to the default codec.</p>
+ */
+public final class CompressionDictionaries {
+
+    static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+    private static final CompressionDictionaries BUNDLED = load("/compression/dictionaries/v%d.dict");
+
+    private final NavigableMap<Integer, CompressionDictionary> dictionaries;
+
+    private CompressionDictionaries(NavigableMap<Integer, CompressionDictionary> dictionaries) {
+        this.dictionaries = dictionaries;
+    }
+
+    /**
+     * @return the dictionaries bundled with the application
+     */
+    public static CompressionDictionaries bundled() {
+        return BUNDLED;
+    }
+
+    /**
+     * Loads the dictionaries found on the classpath.
+     *
+     * @param resourcePattern the resource name with a {@code %d} placeholder for the version
+     * @throws IllegalStateException if a dictionary cannot be read or has an invalid size
+     */
+    public static CompressionDictionaries load(String resourcePattern) {
+        NavigableMap<Integer, CompressionDictionary> dictionaries = new TreeMap<>();
+
+        for (int version = 1; ; version++) {
+            try (InputStream in = CompressionDictionaries.class.getResourceAsStream(resourcePattern.formatted(version))) {
+                if (in == null) {
+                    return new CompressionDictionaries(dictionaries);
+                }
+
+                byte[] bytes = in.readAllBytes();
+                if (bytes.length == 0 || bytes.length > MAX_DICTIONARY_SIZE) {
+                    throw new IllegalStateException("Compression dictionary v" + version + " must be 1 to " + MAX_DICTIONARY_SIZE + " bytes");
+                }
+                dictionaries.put(version, new CompressionDictionary(version, bytes));
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to load compression dictionary v" + version, e);
+            }
+        }
+    }
+
+    /**
+     * @return the dictionary used for new content, or null if none is registered
+     */
+    public CompressionDictionary current() {
+        return dictionaries.isEmpty() ? null : dictionaries.lastEntry().getValue();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the version is not registered
+     */
+    public CompressionDictionary forVersion(int version) {
+        CompressionDictionary dictionary = dictionaries.get(version);
+        if (dictionary == null) {
+            throw new IllegalArgumentException("Unknown compression dictionary version: " + version);
+        }
+        return dictionary;
+    }
+}
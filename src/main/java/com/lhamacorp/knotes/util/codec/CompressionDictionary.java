@@ -0,0 +1,11 @@
+package com.lhamacorp.knotes.util.codec;
+
+/**
+ * Preset Deflate dictionary. The version is written into every payload compressed with it,
+ * so the matching dictionary can be found again when decoding.
+ *
+ * @param version the dictionary version, starting at 1
+ * @param bytes   the dictionary content, at most 32 KB (the Deflate window size)
+ */
+public record CompressionDictionary(int version, byte[] bytes) {
+}
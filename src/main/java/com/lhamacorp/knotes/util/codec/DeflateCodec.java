@@ -0,0 +1,38 @@
+package com.lhamacorp.knotes.util.codec;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+
+/**
+ * Raw Deflate codec, without the GZIP header and CRC trailer.
+ * The compression level trades CPU for density.
+ */
+class DeflateCodec extends TaggedCodec {
+
+    private final int level;
+
+    DeflateCodec(String name, byte tag, int level) {
+        super(name, tag);
+        this.level = level;
+    }
+
+    @Override
+    int encodeBody(CharSequence input, CodecContext context, int offset) {
+        return context.deflate(input, level, null, offset);
+    }
+
+    @Override
+    ByteBuffer decodeBody(byte[] payload, int offset, CodecContext context, int uncompressedLength) {
+        try {
+            return context.inflate(payload, offset, payload.length - offset, uncompressedLength, null);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name() + " payload", e);
+        }
+    }
+
+    @Override
+    InputStream openBody(byte[] payload, int offset) {
+        return new InflatingInputStream(payload, offset, null);
+    }
+}
@@ -0,0 +1,81 @@
+package com.lhamacorp.knotes.util.codec;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+
+/**
+ * Deflate with a preset dictionary, for small notes where plain GZIP has nothing to
+ * back-reference. Payloads use the {@code [tag][dictionary version][uncompressed length][body]}
+ * header, so each payload records the dictionary it needs.
+ */
+class DictionaryCodec implements CompressionCodec {
+
+    private static final byte TAG = 0x05;
+
+    private final CompressionDictionaries dictionaries;
+
+    DictionaryCodec(CompressionDictionaries dictionaries) {
+        this.dictionaries = dictionaries;
+    }
+
+    @Override
+    public String name() {
+        return "DICTIONARY";
+    }
+
+    @Override
+    public byte tag() {
+        return TAG;
+    }
+
+    @Override
+    public byte[] compress(CharSequence input, CodecContext context) {
+        CompressionDictionary dictionary = dictionaries.current();
+        if (dictionary == null) {
+            throw new IllegalStateException("No compression dictionary available");
+        }
+
+        context.put(0, TAG);
+        int offset = TaggedCodec.writeVarint(dictionary.version(), context, 1);
+        offset = TaggedCodec.writeVarint(CodecContext.utf8Length(input), context, offset);
+        int end = context.deflate(input, Deflater.BEST_COMPRESSION, dictionary.bytes(), offset);
+        return context.copy(end);
+    }
+
+    @Override
+    public ByteBuffer decompress(byte[] payload, CodecContext context) {
+        if (payload.length == 0 || payload[0] != TAG) {
+            throw new IllegalArgumentException("Payload was not written by the DICTIONARY codec");
+        }
+
+        int[] version = TaggedCodec.readVarint(payload, 1);
+        int[] length = TaggedCodec.readVarint(payload, version[1]);
+        CompressionDictionary dictionary = dictionaries.forVersion(version[0]);
+
+        try {
+            int offset = length[1];
+            ByteBuffer decoded = context.inflate(payload, offset, payload.length - offset, length[0], dictionary.bytes());
+            if (decoded.remaining() != length[0]) {
+                throw new IllegalArgumentException("Invalid DICTIONARY payload length");
+            }
+            return decoded;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Invalid DICTIONARY payload", e);
+        }
+    }
+
+    @Override
+    public InputStream openStream(byte[] payload) {
+        if (payload.length == 0 || payload[0] != TAG) {
+            throw new IllegalArgumentException("Payload was not written by the DICTIONARY codec");
+        }
+
+        int[] version = TaggedCodec.readVarint(payload, 1);
+        int[] length = TaggedCodec.readVarint(payload, version[1]);
+        CompressionDictionary dictionary = dictionaries.forVersion(version[0]);
+
+        return new InflatingInputStream(payload, length[1], dictionary.bytes());
+    }
+}
@@ -0,0 +1,113 @@
+package com.lhamacorp.knotes.util.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * GZIP codec. Payloads are plain GZIP streams, identified by the GZIP magic header
+ * instead of a codec tag, so they can be served as-is with {@code Content-Encoding: gzip}
+ * and content written before codecs were introduced stays readable.
+ *
+ * <p>The header and trailer are written by hand around a raw Deflate stream, so the
+ * pooled {@link CodecContext} deflater can be reused. The trailer's ISIZE field is used
+ * to presize the output buffer when decoding.</p>
+ */
+class GzipCodec implements CompressionCodec {
+
+    static final byte MAGIC_FIRST_BYTE = (byte) (GZIPInputStream.GZIP_MAGIC & 0xff);
+
+    private static final byte MAGIC_SECOND_BYTE = (byte) (GZIPInputStream.GZIP_MAGIC >> 8);
+    private static final byte DEFLATE_METHOD = 8;
+    private static final byte[] HEADER = {MAGIC_FIRST_BYTE, MAGIC_SECOND_BYTE, DEFLATE_METHOD, 0, 0, 0, 0, 0, 0, 0};
+    private static final int TRAILER_LENGTH = 8;
+    private static final int STREAM_BUFFER_SIZE = 8 * 1024;
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    @Override
+    public String name() {
+        return "GZIP";
+    }
+
+    @Override
+    public byte tag() {
+        return MAGIC_FIRST_BYTE;
+    }
+
+    @Override
+    public byte[] compress(CharSequence input, CodecContext context) {
+        context.put(0, HEADER);
+        int end = context.deflate(input, Deflater.DEFAULT_COMPRESSION, null, HEADER.length);
+
+        context.putIntLE(end, context.checksum());
+        context.putIntLE(end + 4, (int) context.bytesRead());
+        return context.copy(end + TRAILER_LENGTH);
+    }
+
+    @Override
+    public ByteBuffer decompress(byte[] payload, CodecContext context) {
+        if (payload.length < HEADER.length + TRAILER_LENGTH
+                || payload[0] != MAGIC_FIRST_BYTE || payload[1] != MAGIC_SECOND_BYTE || payload[2] != DEFLATE_METHOD) {
+            throw new IllegalArgumentException("Invalid GZIP payload header");
+        }
+
+        int offset = skipHeader(payload);
+        int trailer = payload.length - TRAILER_LENGTH;
+        int expectedCrc = CodecContext.readIntLE(payload, trailer);
+        int expectedSize = CodecContext.readIntLE(payload, trailer + 4);
+
+        try {
+            ByteBuffer decoded = context.inflate(payload, offset, trailer - offset, expectedSize, null);
+            if (decoded.remaining() != expectedSize || context.checksum(decoded) != expectedCrc) {
+                throw new IllegalArgumentException("Corrupt GZIP payload");
+            }
+            return decoded;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Invalid GZIP payload", e);
+        }
+    }
+
+    @Override
+    public InputStream openStream(byte[] payload) {
+        try {
+            return new GZIPInputStream(new ByteArrayInputStream(payload), STREAM_BUFFER_SIZE);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid GZIP payload", e);
+        }
+    }
+
+    private static int skipHeader(byte[] payload) {
+        int flags = payload[3] & 0xff;
+        int offset = HEADER.length;
+
+        if ((flags & FEXTRA) != 0) {
+            offset += 2 + ((payload[offset] & 0xff) | (payload[offset + 1] & 0xff) << 8);
+        }
+        if ((flags & FNAME) != 0) {
+            offset = skipZeroTerminated(payload, offset);
+        }
+        if ((flags & FCOMMENT) != 0) {
+            offset = skipZeroTerminated(payload, offset);
+        }
+        if ((flags & FHCRC) != 0) {
+            offset += 2;
+        }
+
+        return offset;
+    }
+
+    private static int skipZeroTerminated(byte[] payload, int offset) {
+        while (payload[offset] != 0) {
+            offset++;
+        }
+        return offset + 1;
+    }
+}
@@ -0,0 +1,36 @@
+package com.lhamacorp.knotes.util.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Streams a raw Deflate body incrementally, optionally with a preset dictionary.
+ * The inflater is owned by the stream and released on close.
+ */
+class InflatingInputStream extends InflaterInputStream {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    InflatingInputStream(byte[] payload, int offset, byte[] dictionary) {
+        super(new ByteArrayInputStream(payload, offset, payload.length - offset), inflater(dictionary), BUFFER_SIZE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            inf.end();
+        }
+    }
+
+    private static Inflater inflater(byte[] dictionary) {
+        Inflater inflater = new Inflater(true);
+        if (dictionary != null) {
+            inflater.setDictionary(dictionary);
+        }
+        return inflater;
+    }
+}
@@ -0,0 +1,31 @@
+package com.lhamacorp.knotes.util.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Stores content uncompressed. Useful for tiny or already-compressed content where
+ * any compression header costs more than it saves.
+ */
+class StoredCodec extends TaggedCodec {
+
+    StoredCodec() {
+        super("STORED", (byte) 0x01);
+    }
+
+    @Override
+    int encodeBody(CharSequence input, CodecContext context, int offset) {
+        return context.encode(input, offset);
+    }
+
+    @Override
+    ByteBuffer decodeBody(byte[] payload, int offset, CodecContext context, int uncompressedLength) {
+        return ByteBuffer.wrap(payload, offset, payload.length - offset);
+    }
+
+    @Override
+    InputStream openBody(byte[] payload, int offset) {
+        return new ByteArrayInputStream(payload, offset, payload.length - offset);
+    }
+}
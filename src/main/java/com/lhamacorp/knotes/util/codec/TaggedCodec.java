@@ -0,0 +1,119 @@
+package com.lhamacorp.knotes.util.codec;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Base class for codecs that write the {@code [tag][uncompressed length][body]} header.
+ * The length is stored as an unsigned varint so decoders can presize the output buffer.
+ */
+abstract class TaggedCodec implements CompressionCodec {
+
+    private final String name;
+    private final byte tag;
+
+    TaggedCodec(String name, byte tag) {
+        this.name = name;
+        this.tag = tag;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public byte tag() {
+        return tag;
+    }
+
+    @Override
+    public byte[] compress(CharSequence input, CodecContext context) {
+        int length = CodecContext.utf8Length(input);
+        int headerLength = writeHeader(length, context);
+        int end = encodeBody(input, context, headerLength);
+        return context.copy(end);
+    }
+
+    @Override
+    public ByteBuffer decompress(byte[] payload, CodecContext context) {
+        if (payload.length == 0 || payload[0] != tag) {
+            throw new IllegalArgumentException("Payload was not written by the " + name + " codec");
+        }
+
+        int[] header = readVarint(payload, 1);
+        int length = header[0];
+
+        ByteBuffer decoded = decodeBody(payload, header[1], context, length);
+        if (decoded.remaining() != length) {
+            throw new IllegalArgumentException("Invalid " + name + " payload length");
+        }
+        return decoded;
+    }
+
+    @Override
+    public InputStream openStream(byte[] payload) {
+        if (payload.length == 0 || payload[0] != tag) {
+            throw new IllegalArgumentException("Payload was not written by the " + name + " codec");
+        }
+
+        return openBody(payload, readVarint(payload, 1)[1]);
+    }
+
+    /**
+     * Writes the header into the context output buffer.
+     *
+     * @return the header length
+     */
+    int writeHeader(int length, CodecContext context) {
+        context.put(0, tag);
+        return writeVarint(length, context, 1);
+    }
+
+    /**
+     * Encodes the payload body into the context output buffer after the header.
+     *
+     * @return the output position after the body
+     */
+    abstract int encodeBody(CharSequence input, CodecContext context, int offset);
+
+    /**
+     * Decodes the payload body, which starts at {@code offset}, into {@code uncompressedLength} bytes.
+     */
+    abstract ByteBuffer decodeBody(byte[] payload, int offset, CodecContext context, int uncompressedLength);
+
+    /**
+     * Opens an incremental decoder over the payload body, which starts at {@code offset}.
+     */
+    abstract InputStream openBody(byte[] payload, int offset);
+
+    /**
+     * Reads an unsigned varint starting at {@code offset}.
+     *
+     * @return the decoded value and the offset right after it
+     */
+    static int[] readVarint(byte[] payload, int offset) {
+        int value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            if (offset >= payload.length || shift > 28) {
+                throw new IllegalArgumentException("Invalid payload header");
+            }
+            current = payload[offset++];
+            value |= (current & 0x7f) << shift;
+            shift += 7;
+        } while ((current & 0x80) != 0);
+
+        return new int[]{value, offset};
+    }
+
+    static int writeVarint(int value, CodecContext context, int offset) {
+        while ((value & ~0x7f) != 0) {
+            context.put(offset++, (byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        context.put(offset++, (byte) value);
+        return offset;
+    }
+}
@@ -72,6 +72,80 @@ public class NoteControllerTest {
         cleanNoteAction(id);
     }
 
+    @Test
+    @DisplayName("Should Serve Raw Gzip Content For Public Note")
+    public void shouldServeRawGzipContentForPublicNote() throws IOException {
+        String expectedContent = "Test raw " + timestamp;
+        String id = createNoteAction(expectedContent);
+
+        given()
+                .header("Accept-Encoding", "gzip")
+                .param("raw", "")
+                .when()
+                .get("/notes/" + id)
+                .then()
+                .statusCode(200)
+                .header("Content-Encoding", equalTo("gzip"))
+                .body(equalTo(expectedContent));
+        cleanNoteAction(id);
+    }
+
+    @Test
+    @DisplayName("Should Serve Raw Gzip Content For Small Public Note")
+    public void shouldServeRawGzipContentForSmallPublicNote() throws IOException {
+        String expectedContent = "x";
+        String id = createNoteAction(expectedContent);
+
+        given()
+                .header("Accept-Encoding", "gzip")
+                .param("raw", "")
+                .when()
+                .get("/notes/" + id)
+                .then()
+                .statusCode(200)
+                .header("Content-Encoding", equalTo("gzip"))
+                .body(equalTo(expectedContent));
+        cleanNoteAction(id);
+    }
+
+    @Test
+    @DisplayName("Should Return Not Modified For An Unchanged Note")
+    public void shouldReturnNotModifiedForUnchangedNote() throws IOException {
+        String id = createNoteAction("Test etag " + timestamp);
+
+        String etag = given()
+                .when()
+                .get("/notes/" + id)
+                .then()
+                .statusCode(200)
+                .header("ETag", notNullValue())
+                .extract().header("ETag");
+
+        given()
+                .header("If-None-Match", etag)
+                .when()
+                .get("/notes/" + id)
+                .then()
+                .statusCode(304);
+
+        given()
+                .header("If-None-Match", etag)
+                .when()
+                .get("/notes/" + id + "/metadata")
+                .then()
+                .statusCode(304);
+
+        updateNoteAction(id, "Test etag updated " + timestamp);
+        given()
+                .header("If-None-Match", etag)
+                .when()
+                .get("/notes/" + id)
+                .then()
+                .statusCode(200)
+                .body("content", equalTo("Test etag updated " + timestamp));
+        cleanNoteAction(id);
+    }
+
     @Test
     @DisplayName("Should Update A Note")
     public void shouldUpdateANote() throws IOException {
@@ -284,6 +358,39 @@ public class NoteControllerTest {
                 .statusCode(404);
     }
 
+    @Test
+    @DisplayName("Should Reject An If-Match Tag That Only Shares The Version")
+    public void shouldRejectIfMatchWithAlteredRevision() throws IOException {
+        String id = createNoteAction("Test if-match " + timestamp);
+        String etag = given()
+                .when()
+                .get("/notes/" + id)
+                .then()
+                .statusCode(200)
+                .extract().header("ETag");
+        String altered = etag.substring(0, etag.length() - 2) + (etag.charAt(etag.length() - 2) == '0' ? '1' : '0') + "\"";
+
+        given()
+                .contentType(JSON)
+                .header("If-Match", altered)
+                .body(objectMapper.writeValueAsString(new NoteUpdateRequest("altered", "PUBLIC")))
+                .when()
+                .put("/notes/" + id)
+                .then()
+                .statusCode(412);
+
+        given()
+                .contentType(JSON)
+                .header("If-Match", etag)
+                .body(objectMapper.writeValueAsString(new NoteUpdateRequest("matched", "PUBLIC")))
+                .when()
+                .put("/notes/" + id)
+                .then()
+                .statusCode(200)
+                .body("content", equalTo("matched"));
+        cleanNoteAction(id);
+    }
+
     private String createNoteAction(String note) throws JsonProcessingException {
         return given()
                 .contentType(JSON)
@@ -0,0 +1,117 @@
+package com.lhamacorp.knotes.client;
+
+import com.lhamacorp.knotes.client.AuthClient.CurrentUser;
+import com.lhamacorp.knotes.config.RestConfig;
+import com.lhamacorp.knotes.exception.ServiceUnavailableException;
+import com.lhamacorp.knotes.exception.TokenRejectedException;
+import com.lhamacorp.knotes.exception.UnauthorizedException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exercises the real transport against a local stub of the auth API.
+ */
+class AuthClientTest {
+
+    private HttpServer server;
+    private AuthClient authClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/users/current", this::current);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+
+        RestConfig config = new RestConfig();
+        String baseUrl = "http://localhost:" + server.getAddress().getPort();
+        authClient = new AuthClient(config.rest(config.httpClient(Duration.ofSeconds(1)), Duration.ofMillis(500)), baseUrl);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void current_withValidToken_shouldReturnUser() {
+        // When
+        CurrentUser user = authClient.current("Bearer valid");
+
+        // Then
+        assertEquals(new CurrentUser("user123", "alice", List.of("USER")), user);
+    }
+
+    @Test
+    void current_withRejectedToken_shouldThrowUnauthorized() {
+        // When & Then
+        assertThrows(UnauthorizedException.class, () -> authClient.current("Bearer invalid"));
+    }
+
+    @Test
+    void current_whenAuthApiIsSlow_shouldTimeOut() {
+        // When
+        long start = System.nanoTime();
+        assertThrows(ServiceUnavailableException.class, () -> authClient.current("Bearer slow"));
+
+        // Then
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(2)) < 0);
+    }
+
+    @Test
+    void current_whenAuthApiFails_shouldThrowServiceUnavailable() {
+        // When & Then
+        assertThrows(ServiceUnavailableException.class, () -> authClient.current("Bearer failing"));
+    }
+
+    @Test
+    void current_withBadRequest_shouldThrowUnauthorizedButNotRejected() {
+        // When & Then
+        UnauthorizedException e = assertThrows(UnauthorizedException.class, () -> authClient.current("Bearer malformed"));
+        assertFalse(e instanceof TokenRejectedException);
+    }
+
+    private void current(HttpExchange exchange) throws IOException {
+        String token = exchange.getRequestHeaders().getFirst("Authorization");
+
+        switch (token) {
+            case "Bearer valid" -> respond(exchange, 200, """
+                    {"id": "user123", "username": "alice", "roles": ["USER"]}""");
+            case "Bearer slow" -> {
+                try {
+                    Thread.sleep(3_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                respond(exchange, 200, "{}");
+            }
+            case "Bearer failing" -> respond(exchange, 502, "{}");
+            case "Bearer malformed" -> respond(exchange, 400, "{}");
+            default -> respond(exchange, 401, "{}");
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        } catch (IOException e) {
+            // the client may have given up already
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.lhamacorp.knotes.client;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lhamacorp.knotes.client.AuthClient.CurrentUser;
+import com.lhamacorp.knotes.exception.ServiceUnavailableException;
+import com.lhamacorp.knotes.exception.TokenRejectedException;
+import com.lhamacorp.knotes.exception.UnauthorizedException;
+import com.lhamacorp.knotes.util.CircuitBreaker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.SimpleCacheManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+import static com.lhamacorp.knotes.config.CacheConfig.CURRENT;
+import static com.lhamacorp.knotes.config.CacheConfig.REJECTED;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CurrentUserCacheTest {
+
+    @Mock
+    private AuthClient authClient;
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+
+    private SimpleCacheManager cacheManager;
+    private CircuitBreaker breaker;
+    private CurrentUserCache currentUsers;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(List.of(
+                new CaffeineCache(CURRENT, Caffeine.newBuilder().build()),
+                new CaffeineCache(REJECTED, Caffeine.newBuilder().build())));
+        cacheManager.initializeCaches();
+
+        breaker = new CircuitBreaker(2, Duration.ofSeconds(30), clock);
+        currentUsers = new CurrentUserCache(authClient, cacheManager, Duration.ofMinutes(5), breaker, clock);
+    }
+
+    @Test
+    void get_shouldCacheUserUnderTokenHash() {
+        // Given
+        CurrentUser user = new CurrentUser("user123", "alice", List.of("USER"));
+        when(authClient.current("Bearer valid")).thenReturn(user);
+
+        // When
+        currentUsers.get("Bearer valid");
+        CurrentUser cached = currentUsers.get("Bearer valid");
+
+        // Then
+        assertEquals(user, cached);
+        verify(authClient, times(1)).current("Bearer valid");
+        assertNull(cacheManager.getCache(CURRENT).get("Bearer valid"));
+        assertNotNull(cacheManager.getCache(CURRENT).get(CurrentUserCache.keyOf("Bearer valid")));
+    }
+
+    @Test
+    void get_withRejectedToken_shouldNotCallAuthApiAgain() {
+        // Given
+        when(authClient.current("Bearer invalid")).thenThrow(new TokenRejectedException("Error: 401"));
+
+        // When
+        assertThrows(TokenRejectedException.class, () -> currentUsers.get("Bearer invalid"));
+        assertThrows(TokenRejectedException.class, () -> currentUsers.get("Bearer invalid"));
+
+        // Then
+        verify(authClient, times(1)).current("Bearer invalid");
+    }
+
+    @Test
+    void get_whenAuthApiFails_shouldNotRememberFailure() {
+        // Given
+        when(authClient.current("Bearer valid")).thenThrow(new ServiceUnavailableException("timeout"));
+
+        // When
+        assertThrows(ServiceUnavailableException.class, () -> currentUsers.get("Bearer valid"));
+        assertThrows(ServiceUnavailableException.class, () -> currentUsers.get("Bearer valid"));
+
+        // Then
+        verify(authClient, times(2)).current("Bearer valid");
+    }
+
+    @Test
+    void get_withConcurrentLookups_shouldCallAuthApiOnce() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        when(authClient.current("Bearer fresh")).thenAnswer(invocation -> {
+            release.await();
+            return new CurrentUser("user123", "alice", List.of("USER"));
+        });
+
+        // When
+        List<Future<CurrentUser>> lookups = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 8; i++) {
+                lookups.add(executor.submit(() -> currentUsers.get("Bearer fresh")));
+            }
+            Thread.sleep(100);
+            release.countDown();
+        }
+
+        // Then
+        for (Future<CurrentUser> lookup : lookups) {
+            assertEquals("user123", lookup.get().id());
+        }
+        verify(authClient, times(1)).current("Bearer fresh");
+    }
+
+    @Test
+    void get_withStaleEntry_shouldServeItAndRevalidateInBackground() {
+        // Given
+        CurrentUser before = new CurrentUser("user123", "alice", List.of("USER"));
+        CurrentUser after = new CurrentUser("user123", "alice", List.of("USER", "ADMIN"));
+        when(authClient.current("Bearer valid")).thenReturn(before, after);
+        currentUsers.get("Bearer valid");
+        clock.advance(Duration.ofMinutes(6));
+
+        // When
+        CurrentUser served = currentUsers.get("Bearer valid");
+
+        // Then
+        assertEquals(before, served);
+        verify(authClient, timeout(1_000).times(2)).current("Bearer valid");
+        await(() -> after.equals(currentUsers.get("Bearer valid")));
+    }
+
+    @Test
+    void get_whenBreakerIsOpen_shouldServeStaleEntry() {
+        // Given
+        CurrentUser user = new CurrentUser("user123", "alice", List.of("USER"));
+        when(authClient.current("Bearer valid")).thenReturn(user);
+        currentUsers.get("Bearer valid");
+        breaker.onFailure();
+        breaker.onFailure();
+        clock.advance(Duration.ofMinutes(6));
+
+        // When
+        CurrentUser served = currentUsers.get("Bearer valid");
+
+        // Then
+        assertEquals(user, served);
+        verify(authClient, times(1)).current("Bearer valid");
+    }
+
+    @Test
+    void get_whenAuthApiAnswersWithClientError_shouldNotOpenBreaker() {
+        // Given
+        when(authClient.current(anyString())).thenThrow(new UnauthorizedException("Error: 400 BAD_REQUEST"));
+
+        // When
+        assertThrows(UnauthorizedException.class, () -> currentUsers.get("Bearer first"));
+        assertThrows(UnauthorizedException.class, () -> currentUsers.get("Bearer second"));
+
+        // Then
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void get_whenBreakerIsOpen_shouldFailFastForUnknownToken() {
+        // Given
+        when(authClient.current(anyString())).thenThrow(new ServiceUnavailableException("timeout"));
+        assertThrows(ServiceUnavailableException.class, () -> currentUsers.get("Bearer first"));
+        assertThrows(ServiceUnavailableException.class, () -> currentUsers.get("Bearer second"));
+
+        // When & Then
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertThrows(ServiceUnavailableException.class, () -> currentUsers.get("Bearer third"));
+        verify(authClient, never()).current("Bearer third");
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(1).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in time");
+            Thread.onSpinWait();
+        }
+    }
+
+    private static class MutableClock extends Clock {
+
+        private volatile Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("UTC");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
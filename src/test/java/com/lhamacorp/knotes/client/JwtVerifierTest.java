@@ -0,0 +1,204 @@
+package com.lhamacorp.knotes.client;
+
+import com.lhamacorp.knotes.client.AuthClient.CurrentUser;
+import com.lhamacorp.knotes.config.RestConfig;
+import com.lhamacorp.knotes.exception.UnauthorizedException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies tokens signed with a generated key against a local stub serving its JWKS.
+ */
+class JwtVerifierTest {
+
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+
+    private HttpServer server;
+    private KeyPair keyPair;
+    private JwtVerifier verifier;
+    private final AtomicInteger jwksRequests = new AtomicInteger();
+    private volatile Duration jwksDelay = Duration.ZERO;
+
+    @BeforeEach
+    void setUp() throws IOException, GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keyPair = generator.generateKeyPair();
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/jwks", this::jwks);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+
+        verifier = verifier();
+        verifier.refresh();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void verify_withValidToken_shouldBuildUserFromClaims() throws GeneralSecurityException {
+        // Given
+        String token = sign("key-1", claims(Instant.now().plusSeconds(300)));
+
+        // When
+        Optional<CurrentUser> user = verifier.verify("Bearer " + token);
+
+        // Then
+        assertEquals(Optional.of(new CurrentUser("user123", "alice", List.of("USER"))), user);
+    }
+
+    @Test
+    void verify_withExpiredToken_shouldThrowUnauthorized() throws GeneralSecurityException {
+        // Given
+        String token = sign("key-1", claims(Instant.now().minusSeconds(300)));
+
+        // When & Then
+        assertThrows(UnauthorizedException.class, () -> verifier.verify("Bearer " + token));
+    }
+
+    @Test
+    void verify_withTamperedPayload_shouldThrowUnauthorized() throws GeneralSecurityException {
+        // Given
+        String[] parts = sign("key-1", claims(Instant.now().plusSeconds(300))).split("\\.");
+        String forged = BASE64URL.encodeToString("""
+                {"sub": "admin", "roles": ["ADMIN"], "iss": "https://auth.example.com", "aud": "knotes", "exp": %d}"""
+                .formatted(Instant.now().plusSeconds(300).getEpochSecond()).getBytes(UTF_8));
+
+        // When & Then
+        assertThrows(UnauthorizedException.class, () -> verifier.verify(parts[0] + "." + forged + "." + parts[2]));
+    }
+
+    @Test
+    void verify_withOtherIssuer_shouldThrowUnauthorized() throws GeneralSecurityException {
+        // Given
+        String token = sign("key-1", claims(Instant.now().plusSeconds(300)).replace("auth.example.com", "evil.example.com"));
+
+        // When & Then
+        assertThrows(UnauthorizedException.class, () -> verifier.verify(token));
+    }
+
+    @Test
+    void verify_withOpaqueToken_shouldFallBack() {
+        // When & Then
+        assertTrue(verifier.verify("Bearer opaque-token").isEmpty());
+    }
+
+    @Test
+    void verify_withUnknownKey_shouldFallBackWithoutRefetchingEveryTime() throws GeneralSecurityException {
+        // Given
+        String token = sign("key-2", claims(Instant.now().plusSeconds(300)));
+        int requestsBefore = jwksRequests.get();
+
+        // When
+        Optional<CurrentUser> first = verifier.verify(token);
+        Optional<CurrentUser> second = verifier.verify(token);
+
+        // Then
+        assertTrue(first.isEmpty());
+        assertTrue(second.isEmpty());
+        assertTrue(jwksRequests.get() - requestsBefore <= 1);
+    }
+
+    @Test
+    void verify_withKeyNotYetLoaded_shouldFallBackAtOnceAndRefreshInBackground() throws Exception {
+        // Given
+        JwtVerifier fresh = verifier();
+        String token = sign("key-1", claims(Instant.now().plusSeconds(300)));
+        jwksDelay = Duration.ofMillis(500);
+
+        // When
+        long start = System.nanoTime();
+        Optional<CurrentUser> first = fresh.verify(token);
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        fresh.verify(token);
+
+        // Then
+        assertTrue(first.isEmpty());
+        assertTrue(elapsed.compareTo(jwksDelay) < 0, "the request thread must not wait for the key set");
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (fresh.verify(token).isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals("user123", fresh.verify(token).orElseThrow().id());
+        assertEquals(2, jwksRequests.get(), "one request from setUp, one single-flight background refresh");
+    }
+
+    private JwtVerifier verifier() {
+        RestConfig config = new RestConfig();
+        String jwksUri = "http://localhost:" + server.getAddress().getPort() + "/jwks";
+        return new JwtVerifier(config.rest(config.httpClient(Duration.ofSeconds(1)), Duration.ofSeconds(1)),
+                true, jwksUri, "https://auth.example.com", "knotes");
+    }
+
+    private static String claims(Instant expiresAt) {
+        return """
+                {"sub": "user123", "username": "alice", "roles": ["USER"], "iss": "https://auth.example.com", "aud": "knotes", "exp": %d}"""
+                .formatted(expiresAt.getEpochSecond());
+    }
+
+    private String sign(String kid, String claims) throws GeneralSecurityException {
+        String header = BASE64URL.encodeToString("""
+                {"alg": "RS256", "typ": "JWT", "kid": "%s"}""".formatted(kid).getBytes(UTF_8));
+        String payload = BASE64URL.encodeToString(claims.getBytes(UTF_8));
+
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(keyPair.getPrivate());
+        signature.update((header + "." + payload).getBytes(US_ASCII));
+
+        return header + "." + payload + "." + BASE64URL.encodeToString(signature.sign());
+    }
+
+    private void jwks(HttpExchange exchange) throws IOException {
+        jwksRequests.incrementAndGet();
+        try {
+            Thread.sleep(jwksDelay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        RSAPublicKey key = (RSAPublicKey) keyPair.getPublic();
+        String body = """
+                {"keys": [{"kty": "RSA", "kid": "key-1", "use": "sig", "alg": "RS256", "n": "%s", "e": "%s"}]}"""
+                .formatted(BASE64URL.encodeToString(unsigned(key.getModulus().toByteArray())),
+                        BASE64URL.encodeToString(unsigned(key.getPublicExponent().toByteArray())));
+
+        byte[] bytes = body.getBytes(UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static byte[] unsigned(byte[] bytes) {
+        return bytes.length > 1 && bytes[0] == 0 ? Arrays.copyOfRange(bytes, 1, bytes.length) : bytes;
+    }
+}
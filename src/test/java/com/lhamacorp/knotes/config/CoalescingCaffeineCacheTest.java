@@ -0,0 +1,93 @@
+package com.lhamacorp.knotes.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lhamacorp.knotes.domain.Note;
+import com.lhamacorp.knotes.repository.NoteRepository;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CoalescingCaffeineCacheTest {
+
+    private static final int LOOKUPS = 8;
+
+    @Mock
+    private NoteRepository repository;
+
+    private SimpleMeterRegistry registry;
+    private CoalescingCaffeineCache cache;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        Metrics.addRegistry(registry);
+        cache = new CoalescingCaffeineCache("test", Caffeine.newBuilder().build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        Metrics.removeRegistry(registry);
+    }
+
+    @Test
+    void get_withConcurrentMisses_shouldLoadOnceAndCountCoalescedLoads() throws Exception {
+        // Given
+        Note note = new Note("note123", "content", "user123", Instant.now(), Instant.now());
+        CountDownLatch release = new CountDownLatch(1);
+        when(repository.findById("note123")).thenAnswer(invocation -> {
+            release.await();
+            return Optional.of(note);
+        });
+
+        // When
+        List<Future<Note>> lookups = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < LOOKUPS; i++) {
+                lookups.add(executor.submit(() -> cache.get("note123", () -> repository.findById("note123").orElseThrow())));
+            }
+            Thread.sleep(100);
+            release.countDown();
+        }
+
+        // Then
+        for (Future<Note> lookup : lookups) {
+            assertEquals(note, lookup.get());
+        }
+        verify(repository, times(1)).findById("note123");
+        assertEquals(LOOKUPS - 1, registry.get("cache.loads.coalesced").tag("cache", "test").counter().count());
+    }
+
+    @Test
+    void get_whenCached_shouldNotCountCoalescedLoad() {
+        // Given
+        Note note = new Note("note123", "content", "user123", Instant.now(), Instant.now());
+        when(repository.findById("note123")).thenReturn(Optional.of(note));
+        cache.get("note123", () -> repository.findById("note123").orElseThrow());
+
+        // When
+        Note cached = cache.get("note123", () -> repository.findById("note123").orElseThrow());
+
+        // Then
+        assertEquals(note, cached);
+        verify(repository, times(1)).findById("note123");
+        assertEquals(0, registry.get("cache.loads.coalesced").tag("cache", "test").counter().count());
+    }
+}
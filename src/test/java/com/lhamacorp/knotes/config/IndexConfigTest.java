@@ -0,0 +1,109 @@
+package com.lhamacorp.knotes.config;
+
+import com.lhamacorp.knotes.domain.Note;
+import com.lhamacorp.knotes.domain.Pin;
+import com.lhamacorp.knotes.repository.NoteRepository;
+import com.mongodb.ExplainVerbosity;
+import org.bson.Document;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.util.json.ParameterBindingDocumentCodec;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Instant;
+import java.util.List;
+
+import static com.lhamacorp.knotes.config.IndexConfig.MIGRATIONS;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Runs against the configured MongoDB and checks through {@code explain()} that every
+ * repository query is answered from an index. The queries are built from the repositories'
+ * own query strings, so a changed query is checked as it is.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@TestPropertySource(properties = {
+    "encryption_key=test-pepper-for-integration-tests-must-be-long-enough-for-validation"
+})
+class IndexConfigTest {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private IndexConfig indexConfig;
+
+    @Test
+    @DisplayName("Should create every declared index on startup")
+    void verifyIndexes_shouldFindAllDeclaredIndexes() {
+        assertDoesNotThrow(() -> indexConfig.verifyIndexes());
+    }
+
+    @Test
+    @DisplayName("Should record the pin deduplication so later startups skip it")
+    void createIndexes_shouldRecordPinDeduplication() {
+        long recorded = mongoTemplate.getCollection(MIGRATIONS).countDocuments(new Document("_id", "deduplicate-pins"));
+
+        assertEquals(1, recorded);
+    }
+
+    @Test
+    @DisplayName("Should list a user's notes from an index")
+    void findIdsByCreatedBy_shouldUseIndex() {
+        BasicQuery query = new BasicQuery(bind(NoteRepository.IDS_BY_OWNER, "user123", ""), parse(NoteRepository.ID_FIELD));
+        query.setSortObject(parse(NoteRepository.BY_ID));
+
+        assertUsesIndex(Note.class, query);
+    }
+
+    @Test
+    @DisplayName("Should stream a user's metadata from an index")
+    void streamMetadataByCreatedBy_shouldUseIndex() {
+        BasicQuery query = new BasicQuery(bind(NoteRepository.METADATA_BY_OWNER, "user123", "", Instant.EPOCH),
+                parse(NoteRepository.METADATA_FIELDS));
+        query.setSortObject(parse(NoteRepository.BY_ID));
+
+        assertUsesIndex(Note.class, query);
+    }
+
+    @Test
+    @DisplayName("Should find pins by user, by note and by both from an index")
+    void pinQueries_shouldUseIndex() {
+        // the filters PinRepository derives from its method names
+        assertUsesIndex(Pin.class, new Query(where("userId").is("user123")));
+        assertUsesIndex(Pin.class, new Query(where("noteId").is("note123")));
+        assertUsesIndex(Pin.class, new Query(where("userId").is("user123").and("noteId").is("note123")));
+    }
+
+    private void assertUsesIndex(Class<?> type, Query query) {
+        MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(type);
+        QueryMapper mapper = new QueryMapper(mongoTemplate.getConverter());
+        Document filter = mapper.getMappedObject(query.getQueryObject(), entity);
+
+        Document explain = mongoTemplate.getCollection(mongoTemplate.getCollectionName(type))
+                .find(filter)
+                .projection(mapper.getMappedFields(query.getFieldsObject(), entity))
+                .sort(mapper.getMappedSort(query.getSortObject(), entity))
+                .explain(ExplainVerbosity.QUERY_PLANNER);
+
+        List<String> stages = QueryPlans.winningStages(explain);
+        assertTrue(stages.contains("IXSCAN"), "expected an index scan for " + filter + " but got " + stages);
+        assertFalse(stages.contains("COLLSCAN"), "unexpected collection scan for " + filter);
+    }
+
+    private static Document bind(String query, Object... values) {
+        return new ParameterBindingDocumentCodec().decode(query, values);
+    }
+
+    private static Document parse(String json) {
+        return Document.parse(json);
+    }
+}
@@ -0,0 +1,47 @@
+package com.lhamacorp.knotes.config;
+
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the stages of the winning plans out of an {@code explain()} result, for finds and
+ * aggregations alike.
+ */
+public final class QueryPlans {
+
+    private QueryPlans() {
+    }
+
+    public static List<String> winningStages(Document explain) {
+        List<String> stages = new ArrayList<>();
+        collectWinningPlans(explain, stages);
+        return stages;
+    }
+
+    private static void collectWinningPlans(Object node, List<String> stages) {
+        if (node instanceof Document document) {
+            document.forEach((key, value) -> {
+                if ("winningPlan".equals(key)) {
+                    collectStages(value, stages);
+                } else if (!"rejectedPlans".equals(key)) {
+                    collectWinningPlans(value, stages);
+                }
+            });
+        } else if (node instanceof List<?> list) {
+            list.forEach(value -> collectWinningPlans(value, stages));
+        }
+    }
+
+    private static void collectStages(Object node, List<String> stages) {
+        if (node instanceof Document document) {
+            if (document.get("stage") instanceof String stage) {
+                stages.add(stage);
+            }
+            document.values().forEach(value -> collectStages(value, stages));
+        } else if (node instanceof List<?> list) {
+            list.forEach(value -> collectStages(value, stages));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.lhamacorp.knotes.context;
+
+import com.lhamacorp.knotes.exception.UnauthorizedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserContextHolderTest {
+
+    @AfterEach
+    void tearDown() {
+        UserContextHolder.clear();
+    }
+
+    @Test
+    void setLazily_shouldResolveOnlyOnFirstUse() {
+        // Given
+        AtomicInteger resolutions = new AtomicInteger();
+        UserContextHolder.setLazily(() -> {
+            resolutions.incrementAndGet();
+            return new UserContext("user123", "alice", List.of("USER"));
+        });
+
+        // When
+        int beforeUse = resolutions.get();
+        boolean authenticated = UserContextHolder.isAuthenticated();
+        String id = UserContextHolder.get().id();
+
+        // Then
+        assertEquals(0, beforeUse);
+        assertTrue(authenticated);
+        assertEquals("user123", id);
+        assertEquals(1, resolutions.get());
+    }
+
+    @Test
+    void setLazily_whenResolutionFails_shouldRethrowWithoutRetrying() {
+        // Given
+        AtomicInteger resolutions = new AtomicInteger();
+        UserContextHolder.setLazily(() -> {
+            resolutions.incrementAndGet();
+            throw new UnauthorizedException("Invalid token");
+        });
+
+        // When & Then
+        assertThrows(UnauthorizedException.class, UserContextHolder::get);
+        assertThrows(UnauthorizedException.class, UserContextHolder::isAuthenticated);
+        assertEquals(1, resolutions.get());
+    }
+
+    @Test
+    void clear_shouldDropUnresolvedContext() {
+        // Given
+        UserContextHolder.setLazily(() -> {
+            throw new IllegalStateException("should not be resolved");
+        });
+
+        // When
+        UserContextHolder.clear();
+
+        // Then
+        assertNull(UserContextHolder.get());
+    }
+}
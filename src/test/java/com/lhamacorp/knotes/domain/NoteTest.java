@@ -2,6 +2,9 @@ package com.lhamacorp.knotes.domain;
 
 import com.lhamacorp.knotes.exception.DecryptionException;
 import com.lhamacorp.knotes.exception.UnauthorizedException;
+import com.lhamacorp.knotes.util.CompressionUtils;
+import com.lhamacorp.knotes.util.EncryptionUtils;
+import org.bson.types.Binary;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -128,6 +131,55 @@ class NoteTest {
         assertNotNull(note.compressedData());
     }
 
+    @Test
+    @DisplayName("Should store a wrapped data key for PRIVATE content")
+    void constructor_withPrivateMode_shouldStoreWrappedDataKey() {
+        // Given
+        Instant now = Instant.now();
+
+        // When
+        Note note = new Note("test-id", TEST_CONTENT, TEST_USER_ID, now, now, EncryptionMode.PRIVATE, null);
+
+        // Then
+        assertNotNull(note.wrappedDataKey());
+        assertEquals(TEST_CONTENT, note.content(TEST_USER_ID, null));
+    }
+
+    @Test
+    @DisplayName("Should keep reading legacy PRIVATE content without a wrapped data key")
+    void content_legacyPrivateNote_shouldDecryptWithOwnerKey() {
+        // Given - a note in the pre-envelope format, encrypted with a per-note owner key
+        Instant now = Instant.now();
+        byte[] salt = EncryptionUtils.generateSalt();
+        byte[] key = EncryptionUtils.deriveOwnerKey(TEST_USER_ID, salt);
+        byte[] encrypted = EncryptionUtils.encrypt(CompressionUtils.compress(TEST_CONTENT), key);
+
+        Note legacyNote = new Note("test-id", new Binary(encrypted), TEST_USER_ID, now, now,
+                EncryptionMode.PRIVATE, new Binary(salt), false, null, null, null);
+
+        // When & Then
+        assertEquals(TEST_CONTENT, legacyNote.content(TEST_USER_ID, null));
+    }
+
+    @Test
+    @DisplayName("Should stream decrypted content incrementally")
+    void contentStream_privateNote_shouldReturnOriginalContent() throws java.io.IOException {
+        // Given
+        Instant now = Instant.now();
+        String largeContent = TEST_CONTENT.repeat(2000);
+        Note note = new Note("test-id", largeContent, TEST_USER_ID, now, now, EncryptionMode.PRIVATE, null);
+
+        // When
+        String streamed;
+        try (java.io.InputStream in = note.contentStream(TEST_USER_ID, null)) {
+            streamed = new String(in.readAllBytes(), java.nio.charset.StandardCharsets.UTF_8);
+        }
+
+        // Then
+        assertEquals(largeContent, streamed);
+        assertThrows(UnauthorizedException.class, () -> note.contentStream("different-user", null));
+    }
+
     @Test
     @DisplayName("Should create PASSWORD_SHARED content with password encryption")
     void constructor_withPasswordSharedMode_shouldEncryptWithPassword() {
@@ -261,7 +313,7 @@ class NoteTest {
 
         // Create a corrupted content - copy the encrypted data but remove the salt (simulating corruption)
         Note corruptedNote = new Note(id, validNote.compressedData(), TEST_USER_ID, now, now,
-                EncryptionMode.PRIVATE, null, false);
+                EncryptionMode.PRIVATE, null, false, null, null, null);
 
         // When & Then
         DecryptionException exception = assertThrows(DecryptionException.class, () -> {
@@ -351,4 +403,23 @@ class NoteTest {
         // Anonymous user can access with password
         assertEquals(TEST_CONTENT, note.content("1", TEST_PASSWORD));
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should hash the stored content so changes are detectable without decoding")
+    void constructor_shouldComputeContentHash() {
+        // Given
+        Instant now = Instant.now();
+
+        // When
+        Note note = new Note("test-id", TEST_CONTENT, null, now, now);
+        Note same = new Note("test-id", TEST_CONTENT, null, now, now);
+        Note changed = new Note("test-id", TEST_CONTENT + "!", null, now, now);
+        Note empty = new Note("test-id", (String) null, null, now, now);
+
+        // Then
+        assertNotNull(note.contentHash());
+        assertEquals(note.contentHash(), same.contentHash());
+        assertNotEquals(note.contentHash(), changed.contentHash());
+        assertNull(empty.contentHash());
+    }
+}
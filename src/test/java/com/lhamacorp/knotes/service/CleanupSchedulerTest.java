@@ -0,0 +1,227 @@
+package com.lhamacorp.knotes.service;
+
+import com.lhamacorp.knotes.api.dto.NoteMetadata;
+import com.lhamacorp.knotes.config.QueryPlans;
+import com.lhamacorp.knotes.domain.EncryptionMode;
+import com.lhamacorp.knotes.domain.Note;
+import com.lhamacorp.knotes.domain.Pin;
+import com.mongodb.ExplainVerbosity;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.github.f4b6a3.ulid.UlidCreator.getUlid;
+import static com.lhamacorp.knotes.config.CacheConfig.CONTENT;
+import static com.lhamacorp.knotes.config.CacheConfig.DECODED;
+import static com.lhamacorp.knotes.config.CacheConfig.METADATA;
+import static com.lhamacorp.knotes.config.IndexConfig.NOTES;
+import static com.lhamacorp.knotes.domain.EncryptionMode.PRIVATE;
+import static com.lhamacorp.knotes.domain.EncryptionMode.PUBLIC;
+import static java.time.temporal.ChronoUnit.DAYS;
+import static java.time.temporal.ChronoUnit.HOURS;
+import static java.time.temporal.ChronoUnit.MILLIS;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Runs against the configured MongoDB. Every run first cleans up whatever earlier runs left
+ * behind, so the candidates of a test are exactly the notes it creates.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@TestPropertySource(properties = {
+    "encryption_key=test-pepper-for-integration-tests-must-be-long-enough-for-validation"
+})
+class CleanupSchedulerTest {
+
+    private static final String OWNER = "owner";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private NoteWriteBuffer writeBuffer;
+
+    private LeaseService leaseService;
+    private SimpleMeterRegistry registry;
+    private Instant old;
+    private final List<String> notes = new ArrayList<>();
+    private final List<String> pins = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // the lease is covered by LeaseServiceTest, here it is always granted
+        leaseService = mock(LeaseService.class);
+        when(leaseService.runExclusively(eq("cleanup"), any(), any())).thenAnswer(invocation -> {
+            invocation.getArgument(2, Runnable.class).run();
+            return true;
+        });
+
+        scheduler(500, Duration.ZERO).cleanup();
+
+        registry = new SimpleMeterRegistry();
+        Metrics.addRegistry(registry);
+        old = Instant.now().minus(2, DAYS).truncatedTo(MILLIS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Metrics.removeRegistry(registry);
+        mongoTemplate.remove(new Query(where("_id").in(notes)), Note.class);
+        mongoTemplate.remove(new Query(where("_id").in(pins)), Pin.class);
+    }
+
+    @Test
+    @DisplayName("Should delete old empty PUBLIC notes and keep pinned, young, non-empty and PRIVATE ones")
+    void cleanup_shouldOnlyDeleteUnpinnedOldEmptyPublicNotes() {
+        // Given
+        String emptyOld = note("", PUBLIC, old);
+        String pinned = note("", PUBLIC, old);
+        pin(pinned);
+        String young = note("", PUBLIC, Instant.now().minus(1, HOURS));
+        String nonEmpty = note("some content", PUBLIC, old);
+        String privateNote = note("", PRIVATE, old);
+
+        // When
+        scheduler(500, Duration.ZERO).cleanup();
+
+        // Then
+        assertFalse(exists(emptyOld));
+        assertTrue(exists(pinned), "pinned notes are excluded by the anti-join");
+        assertTrue(exists(young), "notes younger than a day are past the cutoff");
+        assertTrue(exists(nonEmpty));
+        assertTrue(exists(privateNote));
+    }
+
+    @Test
+    @DisplayName("Should delete every candidate across batch boundaries and count them")
+    void cleanup_withSeveralBatches_shouldDeleteAllCandidates() {
+        // Given
+        List<String> candidates = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            candidates.add(note("", PUBLIC, old.plusSeconds(i)));
+        }
+
+        // When
+        scheduler(2, Duration.ZERO).cleanup();
+
+        // Then
+        candidates.forEach(id -> assertFalse(exists(id)));
+        assertEquals(5.0, registry.get("knotes.cleanup.scanned").counter().count());
+        assertEquals(5.0, registry.get("knotes.cleanup.deleted").counter().count());
+        assertEquals(1, registry.get("knotes.cleanup.duration").timer().count());
+    }
+
+    @Test
+    @DisplayName("Should keep a note that got content after it was found as a candidate")
+    void cleanup_whenNoteGetsContentDuringRun_shouldKeepIt() throws Exception {
+        // Given
+        String first = note("", PUBLIC, old);
+        String second = note("", PUBLIC, old.plusSeconds(1));
+        Note filled = new Note(second, "written meanwhile", OWNER, old, Instant.now());
+
+        // When
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<?> run = executor.submit(() -> scheduler(1, Duration.ofSeconds(2)).cleanup());
+
+            // the first batch is deleted before the pause, the second note is written during it
+            while (exists(first) && !run.isDone()) {
+                Thread.sleep(10);
+            }
+            mongoTemplate.updateFirst(new Query(where("_id").is(second)),
+                    new Update().set("content", filled.compressedData()).set("hash", filled.contentHash()), Note.class);
+            run.get();
+        }
+
+        // Then
+        assertFalse(exists(first));
+        assertTrue(exists(second));
+    }
+
+    @Test
+    @DisplayName("Should evict deleted notes from the note caches")
+    void cleanup_shouldEvictDeletedNotes() {
+        // Given
+        String id = note("", PUBLIC, old);
+        Note note = mongoTemplate.findById(id, Note.class);
+        String decodedKey = NoteService.decodedKey(id, note.contentHash(), note.modifiedAt());
+        cacheManager.getCache(CONTENT).put(id, note);
+        cacheManager.getCache(METADATA).put(id, NoteMetadata.from(note));
+        cacheManager.getCache(DECODED).put(decodedKey, "");
+
+        // When
+        scheduler(500, Duration.ZERO).cleanup();
+
+        // Then
+        assertFalse(exists(id));
+        assertNull(cached(CONTENT, id));
+        assertNull(cached(METADATA, id));
+        assertNull(cached(DECODED, decodedKey));
+    }
+
+    @Test
+    @DisplayName("Should find cleanup candidates from the partial index")
+    void candidates_shouldUseIndex() {
+        // When
+        Document explain = mongoTemplate.getCollection(NOTES)
+                .aggregate(CleanupScheduler.candidates(Instant.now()))
+                .explain(ExplainVerbosity.QUERY_PLANNER);
+
+        // Then
+        List<String> stages = QueryPlans.winningStages(explain);
+        assertTrue(stages.contains("IXSCAN"), "expected an index scan but got " + stages);
+        assertFalse(stages.contains("COLLSCAN"), "unexpected collection scan");
+    }
+
+    private CleanupScheduler scheduler(int batchSize, Duration batchPause) {
+        return new CleanupScheduler(mongoTemplate, cacheManager, writeBuffer, leaseService, batchSize, batchPause);
+    }
+
+    private String note(String content, EncryptionMode mode, Instant createdAt) {
+        String id = getUlid().toString();
+        mongoTemplate.save(new Note(id, content, OWNER, createdAt, createdAt, mode, null));
+        notes.add(id);
+        return id;
+    }
+
+    private void pin(String noteId) {
+        String id = getUlid().toString();
+        mongoTemplate.save(new Pin(id, noteId, OWNER, Instant.now()));
+        pins.add(id);
+    }
+
+    private boolean exists(String id) {
+        return mongoTemplate.exists(new Query(where("_id").is(id)), Note.class);
+    }
+
+    private Object cached(String cacheName, String key) {
+        Cache.ValueWrapper value = cacheManager.getCache(cacheName).get(key);
+        return value != null ? value.get() : null;
+    }
+}
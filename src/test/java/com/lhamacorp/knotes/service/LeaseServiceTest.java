@@ -0,0 +1,144 @@
+package com.lhamacorp.knotes.service;
+
+import com.lhamacorp.knotes.domain.Lease;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.time.ZoneOffset.UTC;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Runs against the configured MongoDB, with two lease services standing in for two replicas.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@TestPropertySource(properties = {
+    "encryption_key=test-pepper-for-integration-tests-must-be-long-enough-for-validation"
+})
+class LeaseServiceTest {
+
+    private static final Duration TTL = Duration.ofMinutes(10);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private String lease;
+    private Instant now;
+
+    @BeforeEach
+    void setUp() {
+        lease = "test-" + UUID.randomUUID();
+        now = Instant.now();
+    }
+
+    @Test
+    @DisplayName("Should let only one replica hold a lease")
+    void tryAcquire_whenHeldByAnotherReplica_shouldFail() {
+        // Given
+        LeaseService first = replica("first", now);
+        LeaseService second = replica("second", now);
+
+        // When
+        boolean firstAcquired = first.tryAcquire(lease, TTL);
+        boolean secondAcquired = second.tryAcquire(lease, TTL);
+
+        // Then
+        assertTrue(firstAcquired);
+        assertFalse(secondAcquired);
+        assertTrue(first.tryAcquire(lease, TTL), "the holder can re-acquire its own lease");
+    }
+
+    @Test
+    @DisplayName("Should hand an expired lease over to another replica")
+    void tryAcquire_whenLeaseExpired_shouldSucceed() {
+        // Given
+        replica("first", now).tryAcquire(lease, TTL);
+
+        // When
+        boolean acquired = replica("second", now.plus(TTL).plusSeconds(1)).tryAcquire(lease, TTL);
+
+        // Then
+        assertTrue(acquired);
+        assertEquals("second", mongoTemplate.findById(lease, Lease.class).holder());
+    }
+
+    @Test
+    @DisplayName("Should only renew a lease held by this replica")
+    void renew_shouldExtendOwnLeaseOnly() {
+        // Given
+        replica("first", now).tryAcquire(lease, TTL);
+
+        // When
+        boolean renewed = replica("first", now.plusSeconds(60)).renew(lease, TTL);
+        boolean stolen = replica("second", now.plusSeconds(60)).renew(lease, TTL);
+
+        // Then
+        assertTrue(renewed);
+        assertFalse(stolen);
+        assertEquals(now.plusSeconds(60).plus(TTL).toEpochMilli(),
+                mongoTemplate.findById(lease, Lease.class).expiresAt().toEpochMilli());
+    }
+
+    @Test
+    @DisplayName("Should run a job on one replica only and record its duration")
+    void runExclusively_shouldRunOnceAcrossReplicas() {
+        // Given
+        AtomicInteger runs = new AtomicInteger();
+
+        // When
+        boolean ranOnFirst = replica("first", now).runExclusively(lease, TTL, runs::incrementAndGet);
+        boolean ranOnSecond = replica("second", now.plusSeconds(5)).runExclusively(lease, TTL, runs::incrementAndGet);
+
+        // Then
+        assertTrue(ranOnFirst);
+        assertFalse(ranOnSecond);
+        assertEquals(1, runs.get());
+
+        Lease stored = mongoTemplate.findById(lease, Lease.class);
+        assertEquals("first", stored.holder());
+        assertNotNull(stored.lastRunAt());
+        assertNotNull(stored.lastRunMillis());
+    }
+
+    @Test
+    @DisplayName("Should interrupt a job whose lease was taken over while it ran")
+    void runExclusively_whenLeaseLost_shouldInterruptJob() {
+        // Given
+        Duration ttl = Duration.ofMillis(300);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        LeaseService first = new LeaseService(mongoTemplate, Clock.systemUTC(), "first");
+
+        // When
+        first.runExclusively(lease, ttl, () -> {
+            mongoTemplate.updateFirst(new Query(where("_id").is(lease)), new Update().set("holder", "second"), Lease.class);
+            try {
+                Thread.sleep(Duration.ofSeconds(5));
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+        });
+
+        // Then
+        assertTrue(interrupted.get());
+        assertFalse(Thread.currentThread().isInterrupted(), "the interrupt must not leak past the job");
+        assertEquals("second", mongoTemplate.findById(lease, Lease.class).holder());
+    }
+
+    private LeaseService replica(String instanceId, Instant at) {
+        return new LeaseService(mongoTemplate, Clock.fixed(at, UTC), instanceId);
+    }
+}
@@ -6,6 +6,7 @@ import com.lhamacorp.knotes.context.UserContextHolder;
 import com.lhamacorp.knotes.domain.EncryptionMode;
 import com.lhamacorp.knotes.domain.Note;
 import com.lhamacorp.knotes.exception.BadRequestException;
+import com.lhamacorp.knotes.exception.ConflictException;
 import com.lhamacorp.knotes.repository.NoteRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -16,16 +17,25 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.data.domain.Limit;
 
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static java.time.Instant.now;
 import static java.util.Collections.emptyList;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -34,6 +44,15 @@ class NoteServiceTest {
     @Mock
     private NoteRepository repository;
 
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private NoteIdFilter idFilter;
+
+    @Mock
+    private NoteWriteBuffer writeBuffer;
+
     @InjectMocks
     private NoteService noteService;
 
@@ -66,6 +85,7 @@ class NoteServiceTest {
     @Test
     void exists_whenNoteExists_shouldReturnTrue() {
         // Given
+        when(idFilter.mightContain(testId)).thenReturn(true);
         when(repository.existsById(testId)).thenReturn(true);
 
         // When
@@ -79,6 +99,7 @@ class NoteServiceTest {
     @Test
     void exists_whenNoteDoesNotExist_shouldReturnFalse() {
         // Given
+        when(idFilter.mightContain(testId)).thenReturn(true);
         when(repository.existsById(testId)).thenReturn(false);
 
         // When
@@ -89,6 +110,37 @@ class NoteServiceTest {
         verify(repository).existsById(testId);
     }
 
+    @Test
+    void exists_whenFilterRulesOutId_shouldNotQueryRepository() {
+        // Given
+        when(idFilter.mightContain(testId)).thenReturn(false);
+
+        // When
+        boolean result = noteService.exists(testId);
+
+        // Then
+        assertFalse(result);
+        verify(repository, never()).existsById(anyString());
+    }
+
+    @Test
+    void exists_whenMissRepeats_shouldAnswerFromNegativeCache() {
+        // Given
+        ConcurrentMapCache missingCache = new ConcurrentMapCache("missing");
+        when(cacheManager.getCache("missing")).thenReturn(missingCache);
+        when(idFilter.mightContain(testId)).thenReturn(true);
+        when(repository.existsById(testId)).thenReturn(false);
+
+        // When
+        boolean first = noteService.exists(testId);
+        boolean second = noteService.exists(testId);
+
+        // Then
+        assertFalse(first);
+        assertFalse(second);
+        verify(repository, times(1)).existsById(testId);
+    }
+
     @Test
     void findById_whenNoteExists_shouldReturnNote() {
         // Given
@@ -135,6 +187,38 @@ class NoteServiceTest {
         verify(repository).findMetadataById(testId);
     }
 
+    @Test
+    void findMetadataById_whenNoteIsCached_shouldNotQueryRepository() {
+        // Given
+        ConcurrentMapCache contentCache = new ConcurrentMapCache("content");
+        contentCache.put(testId, testNote);
+        when(cacheManager.getCache("content")).thenReturn(contentCache);
+
+        // When
+        NoteMetadata result = noteService.findMetadataById(testId);
+
+        // Then
+        assertEquals(testId, result.id());
+        assertEquals(testModifiedAt, result.modifiedAt());
+        verify(repository, never()).findMetadataById(anyString());
+    }
+
+    @Test
+    void publicContent_whenDecodedContentIsCached_shouldReuseIt() {
+        // Given
+        ConcurrentMapCache decodedCache = new ConcurrentMapCache("decoded");
+        when(cacheManager.getCache("decoded")).thenReturn(decodedCache);
+
+        // When
+        String first = noteService.publicContent(testNote);
+        decodedCache.put(testId + "@" + testNote.contentHash(), "cached content");
+        String second = noteService.publicContent(testNote);
+
+        // Then
+        assertEquals(testContent, first);
+        assertEquals("cached content", second);
+    }
+
     @Test
     void findMetadataById_whenNoteDoesNotExist_shouldThrowNotFoundException() {
         // Given
@@ -173,6 +257,193 @@ class NoteServiceTest {
         assertEquals(capturedNote.createdAt(), capturedNote.modifiedAt());
     }
 
+    @Test
+    void save_shouldWriteSavedNoteThroughToCaches() {
+        // Given
+        ConcurrentMapCache contentCache = new ConcurrentMapCache("content");
+        ConcurrentMapCache metadataCache = new ConcurrentMapCache("metadata");
+        ConcurrentMapCache decodedCache = new ConcurrentMapCache("decoded");
+        when(cacheManager.getCache("content")).thenReturn(contentCache);
+        when(cacheManager.getCache("metadata")).thenReturn(metadataCache);
+        when(cacheManager.getCache("decoded")).thenReturn(decodedCache);
+        when(repository.save(any(Note.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        Note result = noteService.save(testContent, EncryptionMode.PUBLIC);
+
+        // Then
+        assertEquals(result, contentCache.get(result.id(), Note.class));
+        assertEquals(NoteMetadata.from(result), metadataCache.get(result.id(), NoteMetadata.class));
+        assertEquals(testContent, decodedCache.get(result.id() + "@" + result.contentHash(), String.class));
+    }
+
+    @Test
+    void publicContent_afterMongoRoundTrip_shouldReuseWrittenThroughEntry() {
+        // Given
+        ConcurrentMapCache decodedCache = new ConcurrentMapCache("decoded");
+        when(cacheManager.getCache("content")).thenReturn(new ConcurrentMapCache("content"));
+        when(cacheManager.getCache("metadata")).thenReturn(new ConcurrentMapCache("metadata"));
+        when(cacheManager.getCache("decoded")).thenReturn(decodedCache);
+        when(repository.save(any(Note.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        Note saved = noteService.save(testContent, EncryptionMode.PUBLIC);
+
+        // Mongo keeps milliseconds only
+        Note reloaded = new Note(saved.id(), saved.compressedData(), saved.createdBy(), saved.createdAt(),
+                saved.modifiedAt().truncatedTo(ChronoUnit.MILLIS), saved.encryptionMode(), saved.encryptionSalt(),
+                saved.requiresPassword(), saved.wrappedDataKey(), saved.contentHash(), saved.version());
+        decodedCache.put(saved.id() + "@" + saved.contentHash(), "cached content");
+
+        // When
+        String content = noteService.publicContent(reloaded);
+
+        // Then
+        assertEquals("cached content", content);
+        assertEquals(1, decodedCache.getNativeCache().size());
+    }
+
+    @Test
+    void update_whenSaveFails_shouldEvictCachedEntries() {
+        // Given
+        ConcurrentMapCache contentCache = new ConcurrentMapCache("content");
+        ConcurrentMapCache metadataCache = new ConcurrentMapCache("metadata");
+        contentCache.put(testId, testNote);
+        metadataCache.put(testId, NoteMetadata.from(testNote));
+        when(cacheManager.getCache("content")).thenReturn(contentCache);
+        when(cacheManager.getCache("metadata")).thenReturn(metadataCache);
+        when(repository.updateIfUnchanged(any(Note.class), any(), anyString(), any()))
+                .thenThrow(new IllegalStateException("write failed"));
+
+        // When & Then
+        assertThrows(IllegalStateException.class, () -> noteService.update(testId, "Updated content", null, null, null));
+        assertNull(contentCache.get(testId));
+        assertNull(metadataCache.get(testId));
+    }
+
+    @Test
+    void update_whenOlderRevisionReturnsLast_shouldNotCacheIt() {
+        // Given
+        Note newer = testNote.withVersion(2L);
+        ConcurrentMapCache contentCache = new ConcurrentMapCache("content");
+        ConcurrentMapCache metadataCache = new ConcurrentMapCache("metadata");
+        contentCache.put(testId, newer);
+        metadataCache.put(testId, NoteMetadata.from(newer));
+        when(cacheManager.getCache("content")).thenReturn(contentCache);
+        when(cacheManager.getCache("metadata")).thenReturn(metadataCache);
+
+        Note older = new Note(testId, "Updated content", testUserId, testCreatedAt, now()).withVersion(1L);
+        when(repository.updateIfUnchanged(any(Note.class), any(), anyString(), any())).thenReturn(older);
+
+        // When
+        noteService.update(testId, "Updated content", null, null, null);
+
+        // Then
+        assertNull(contentCache.get(testId));
+        assertNull(metadataCache.get(testId));
+    }
+
+    @Test
+    void update_whenNewerRevisionReturns_shouldReplaceCachedOne() {
+        // Given
+        ConcurrentMapCache contentCache = new ConcurrentMapCache("content");
+        ConcurrentMapCache metadataCache = new ConcurrentMapCache("metadata");
+        contentCache.put(testId, testNote);
+        metadataCache.put(testId, NoteMetadata.from(testNote));
+        when(cacheManager.getCache("content")).thenReturn(contentCache);
+        when(cacheManager.getCache("metadata")).thenReturn(metadataCache);
+
+        Note newer = new Note(testId, "Updated content", testUserId, testCreatedAt, now()).withVersion(1L);
+        when(repository.updateIfUnchanged(any(Note.class), any(), anyString(), any())).thenReturn(newer);
+
+        // When
+        noteService.update(testId, "Updated content", null, null, null);
+
+        // Then
+        assertEquals(newer, contentCache.get(testId, Note.class));
+        assertEquals(NoteMetadata.from(newer), metadataCache.get(testId, NoteMetadata.class));
+    }
+
+    @Test
+    void delete_shouldEvictDecodedContent() {
+        // Given
+        ConcurrentMapCache decodedCache = new ConcurrentMapCache("decoded");
+        String decodedKey = testId + "@" + testNote.contentHash();
+        decodedCache.put(decodedKey, testContent);
+        when(cacheManager.getCache("decoded")).thenReturn(decodedCache);
+        when(repository.findById(testId)).thenReturn(Optional.of(testNote));
+
+        // When
+        noteService.delete(testId);
+
+        // Then
+        verify(repository).deleteById(testId);
+        assertNull(decodedCache.get(decodedKey));
+    }
+
+    @Test
+    void update_withCachedMetadata_shouldWriteInOneConditionalUpdate() {
+        // Given
+        ConcurrentMapCache metadataCache = new ConcurrentMapCache("metadata");
+        metadataCache.put(testId, NoteMetadata.from(testNote));
+        when(cacheManager.getCache("metadata")).thenReturn(metadataCache);
+
+        Note updatedNote = new Note(testId, "Updated content", testUserId, testCreatedAt, now());
+        when(repository.updateIfUnchanged(any(Note.class), eq(EncryptionMode.PUBLIC), eq(testUserId), eq(0L)))
+                .thenReturn(updatedNote);
+
+        // When
+        Note result = noteService.update(testId, "Updated content", null, null, 0L);
+
+        // Then
+        assertEquals(updatedNote, result);
+        verify(repository, never()).findById(anyString());
+        verify(repository, never()).findMetadataById(anyString());
+    }
+
+    @Test
+    void update_withStaleVersion_shouldThrowConflictWithCurrentVersion() {
+        // Given
+        Note newer = new Note(testId, testNote.compressedData(), testUserId, testCreatedAt, testModifiedAt,
+                EncryptionMode.PUBLIC, null, false, null, testNote.contentHash(), 3L);
+        when(repository.findMetadataById(testId)).thenReturn(Optional.of(testNote), Optional.of(newer));
+        when(repository.updateIfUnchanged(any(Note.class), any(), anyString(), eq(1L))).thenReturn(null);
+
+        // When
+        ConflictException exception = assertThrows(ConflictException.class,
+            () -> noteService.update(testId, "Updated content", null, null, 1L));
+
+        // Then
+        assertEquals(3L, exception.current().version());
+    }
+
+    @Test
+    void update_withWriteBuffer_shouldBufferAndServePendingNote() {
+        // Given
+        ConcurrentMapCache metadataCache = new ConcurrentMapCache("metadata");
+        when(cacheManager.getCache("metadata")).thenReturn(metadataCache);
+        when(repository.findMetadataById(testId)).thenReturn(Optional.of(testNote));
+        AtomicReference<Note> pending = new AtomicReference<>();
+        when(writeBuffer.enabled()).thenReturn(true);
+        when(writeBuffer.pending(testId)).thenAnswer(invocation -> pending.get());
+        when(writeBuffer.put(eq(testId), any(NoteMetadata.class), eq(testUserId), eq(0L), any()))
+                .thenAnswer(invocation -> {
+                    Function<NoteMetadata, Note> update = invocation.getArgument(4);
+                    NoteMetadata base = invocation.getArgument(1);
+                    pending.set(update.apply(base).withVersion(base.version() + 1));
+                    return pending.get();
+                });
+
+        // When
+        Note result = noteService.update(testId, "Buffered content", null, null, 0L);
+
+        // Then
+        assertEquals("Buffered content", result.content());
+        assertEquals(1L, result.version());
+        verify(repository, never()).updateIfUnchanged(any(Note.class), any(), anyString(), any());
+
+        assertEquals(result, noteService.findById(testId));
+        verify(repository, never()).findById(anyString());
+    }
+
     @Test
     void save_withNullContent_shouldHandleGracefully() {
         // Given
@@ -219,19 +490,19 @@ class NoteServiceTest {
     void update_whenNoteExists_shouldUpdateContentAndModifiedDate() {
         // Given
         String updatedContent = "Updated content content";
-        when(repository.findById(testId)).thenReturn(Optional.of(testNote));
+        when(repository.findMetadataById(testId)).thenReturn(Optional.of(testNote));
 
         ArgumentCaptor<Note> noteCaptor = ArgumentCaptor.forClass(Note.class);
         Note updatedNote = new Note(testId, updatedContent, testUserId, testCreatedAt, now());
-        when(repository.save(any(Note.class))).thenReturn(updatedNote);
+        when(repository.updateIfUnchanged(any(Note.class), any(), anyString(), any())).thenReturn(updatedNote);
 
         // When
-        Note result = noteService.update(testId, updatedContent, null, null);
+        Note result = noteService.update(testId, updatedContent, null, null, null);
 
         // Then
         assertEquals(updatedNote, result);
-        verify(repository).findById(testId);
-        verify(repository).save(noteCaptor.capture());
+        verify(repository).findMetadataById(testId);
+        verify(repository).updateIfUnchanged(noteCaptor.capture(), any(), anyString(), any());
 
         Note capturedNote = noteCaptor.getValue();
         assertEquals(testId, capturedNote.id());
@@ -244,32 +515,32 @@ class NoteServiceTest {
     void update_whenNoteDoesNotExist_shouldThrowNotFoundException() {
         // Given
         String updatedContent = "Updated content";
-        when(repository.findById(testId)).thenReturn(Optional.empty());
+        when(repository.findMetadataById(testId)).thenReturn(Optional.empty());
 
         // When & Then
         BadRequestException exception = assertThrows(BadRequestException.class,
-            () -> noteService.update(testId, updatedContent, null, null));
+            () -> noteService.update(testId, updatedContent, null, null, null));
 
         assertEquals("Note not found!", exception.getMessage());
-        verify(repository).findById(testId);
-        verify(repository, never()).save(any(Note.class));
+        verify(repository).findMetadataById(testId);
+        verify(repository, never()).updateIfUnchanged(any(Note.class), any(), anyString(), any());
     }
 
     @Test
     void update_withNullContent_shouldUpdateToNull() {
         // Given
-        when(repository.findById(testId)).thenReturn(Optional.of(testNote));
+        when(repository.findMetadataById(testId)).thenReturn(Optional.of(testNote));
 
         ArgumentCaptor<Note> noteCaptor = ArgumentCaptor.forClass(Note.class);
         Note updatedNote = new Note(testId, (String) null, testUserId, testCreatedAt, now());
-        when(repository.save(any(Note.class))).thenReturn(updatedNote);
+        when(repository.updateIfUnchanged(any(Note.class), any(), anyString(), any())).thenReturn(updatedNote);
 
         // When
-        Note result = noteService.update(testId, null, null, null);
+        Note result = noteService.update(testId, null, null, null, null);
 
         // Then
         assertEquals(updatedNote, result);
-        verify(repository).save(noteCaptor.capture());
+        verify(repository).updateIfUnchanged(noteCaptor.capture(), any(), anyString(), any());
 
         Note capturedNote = noteCaptor.getValue();
         assertNull(capturedNote.content());
@@ -282,14 +553,93 @@ class NoteServiceTest {
             new Note("note1", "content1", testUserId, testCreatedAt, testModifiedAt),
             new Note("note2", "content2", testUserId, testCreatedAt, testModifiedAt)
         );
-        when(repository.findAllByCreatedBy(testUserId)).thenReturn(notes);
+        when(repository.findIdsByCreatedBy(testUserId, "", Limit.of(100))).thenReturn(notes);
 
         // When
-        List<String> result = noteService.findAll();
+        List<String> result = noteService.findAll(null, 100);
 
         // Then
         assertEquals(List.of("note1", "note2"), result);
-        verify(repository).findAllByCreatedBy(testUserId);
+        verify(repository).findIdsByCreatedBy(testUserId, "", Limit.of(100));
+    }
+
+    @Test
+    void findAll_withoutPage_shouldReturnAllNoteIds() {
+        // Given
+        List<Note> notes = List.of(new Note("note1", "content1", testUserId, testCreatedAt, testModifiedAt));
+        when(repository.findIdsByCreatedBy(testUserId, "", Limit.unlimited())).thenReturn(notes);
+
+        // When
+        List<String> result = noteService.findAll();
+
+        // Then
+        assertEquals(List.of("note1"), result);
+    }
+
+    @Test
+    void findAll_withCursor_shouldContinueAfterCursor() {
+        // Given
+        List<Note> notes = List.of(new Note("note3", "content3", testUserId, testCreatedAt, testModifiedAt));
+        when(repository.findIdsByCreatedBy(testUserId, "note2", Limit.of(2))).thenReturn(notes);
+
+        // When
+        List<String> result = noteService.findAll("note2", 2);
+
+        // Then
+        assertEquals(List.of("note3"), result);
+    }
+
+    @Test
+    void streamMetadata_withModifiedSince_shouldMapProjectionToMetadata() {
+        // Given
+        Instant since = Instant.parse("2024-01-01T00:00:00Z");
+        when(repository.streamMetadataByCreatedBy(testUserId, "", since, Limit.of(50)))
+                .thenReturn(Stream.of(testNote));
+
+        // When
+        List<NoteMetadata> result;
+        try (Stream<NoteMetadata> metadata = noteService.streamMetadata(null, 50, since).get()) {
+            result = metadata.toList();
+        }
+
+        // Then
+        assertEquals(List.of(NoteMetadata.from(testNote)), result);
+    }
+
+    @Test
+    void streamMetadata_shouldNotOpenCursorUntilStreamIsRequested() {
+        // Given
+        when(repository.streamMetadataByCreatedBy(testUserId, "", Instant.EPOCH, Limit.of(50)))
+                .thenReturn(Stream.of(testNote));
+
+        // When
+        Supplier<Stream<NoteMetadata>> query = noteService.streamMetadata(null, 50, null);
+
+        // Then
+        verify(writeBuffer).flushOwnedBy(testUserId);
+        verifyNoInteractions(repository);
+        try (Stream<NoteMetadata> metadata = query.get()) {
+            assertEquals(1, metadata.count());
+        }
+    }
+
+    @Test
+    void findAllById_shouldQueryOnlyCacheMissesAndBackPopulate() {
+        // Given
+        ConcurrentMapCache contentCache = new ConcurrentMapCache("content");
+        contentCache.put(testId, testNote);
+        when(cacheManager.getCache("content")).thenReturn(contentCache);
+
+        Note other = new Note("note2", "content2", testUserId, testCreatedAt, testModifiedAt);
+        when(repository.findAllById(List.of("note2", "missing"))).thenReturn(List.of(other));
+
+        // When
+        List<Note> result = noteService.findAllById(List.of("note2", testId, "missing"));
+
+        // Then
+        assertEquals(List.of(other, testNote), result);
+        assertEquals(other, contentCache.get("note2", Note.class));
+        verify(repository).findAllById(List.of("note2", "missing"));
     }
 
     @Test
@@ -299,23 +649,23 @@ class NoteServiceTest {
         UserContextHolder.set(anonymousUser);
 
         // When
-        List<String> result = noteService.findAll();
+        List<String> result = noteService.findAll(null, 100);
 
         // Then
         assertEquals(emptyList(), result);
-        verify(repository, never()).findAllByCreatedBy(anyString());
+        verify(repository, never()).findIdsByCreatedBy(anyString(), anyString(), any());
     }
 
     @Test
     void findAll_withAuthenticatedUserNoNotes_shouldReturnEmptyList() {
         // Given
-        when(repository.findAllByCreatedBy(testUserId)).thenReturn(emptyList());
+        when(repository.findIdsByCreatedBy(testUserId, "", Limit.of(100))).thenReturn(emptyList());
 
         // When
-        List<String> result = noteService.findAll();
+        List<String> result = noteService.findAll(null, 100);
 
         // Then
         assertEquals(emptyList(), result);
-        verify(repository).findAllByCreatedBy(testUserId);
+        verify(repository).findIdsByCreatedBy(testUserId, "", Limit.of(100));
     }
 }
\ No newline at end of file
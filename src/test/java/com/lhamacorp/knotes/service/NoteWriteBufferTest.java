@@ -0,0 +1,214 @@
+package com.lhamacorp.knotes.service;
+
+import com.lhamacorp.knotes.api.dto.NoteMetadata;
+import com.lhamacorp.knotes.context.UserContext;
+import com.lhamacorp.knotes.context.UserContextHolder;
+import com.lhamacorp.knotes.domain.Note;
+import com.lhamacorp.knotes.exception.ConflictException;
+import com.lhamacorp.knotes.repository.NoteRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import static com.github.f4b6a3.ulid.UlidCreator.getUlid;
+import static com.lhamacorp.knotes.config.CacheConfig.METADATA;
+import static com.lhamacorp.knotes.domain.EncryptionMode.PRIVATE;
+import static com.lhamacorp.knotes.domain.EncryptionMode.PUBLIC;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Runs against the configured MongoDB, with a second writer standing in for another replica.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@TestPropertySource(properties = {
+    "encryption_key=test-pepper-for-integration-tests-must-be-long-enough-for-validation"
+})
+class NoteWriteBufferTest {
+
+    private static final String OWNER = "owner";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private NoteRepository repository;
+
+    @Autowired
+    private NoteIdFilter idFilter;
+
+    private NoteWriteBuffer buffer;
+    private Note stored;
+
+    @BeforeEach
+    void setUp() {
+        buffer = new NoteWriteBuffer(mongoTemplate, cacheManager, true);
+        Instant now = Instant.now();
+        stored = mongoTemplate.save(new Note(getUlid().toString(), "original", OWNER, now, now, PUBLIC, null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        UserContextHolder.clear();
+        cacheManager.getCache(METADATA).evict(stored.id());
+        mongoTemplate.remove(stored);
+    }
+
+    @Test
+    @DisplayName("Should write a burst of updates once, advancing the version by the number of updates")
+    void flush_afterBurst_shouldWriteLatestContentOnce() {
+        // Given
+        buffer.put(stored.id(), metadata(), OWNER, 0L, content("first"));
+        buffer.put(stored.id(), metadata(), OWNER, 1L, content("second"));
+        buffer.put(stored.id(), metadata(), OWNER, 2L, content("third"));
+
+        // When
+        buffer.flush();
+
+        // Then
+        Note written = mongoTemplate.findById(stored.id(), Note.class);
+        assertEquals("third", written.content());
+        assertEquals(3L, written.version());
+        assertNull(buffer.pending(stored.id()));
+    }
+
+    @Test
+    @DisplayName("Should accept only one of two concurrent updates expecting the same version")
+    void put_concurrentlyWithSameExpectedVersion_shouldConflictOnce() throws Exception {
+        // Given
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Note>> puts = new ArrayList<>();
+
+        // When
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 2; i++) {
+                String content = "writer-" + i;
+                puts.add(executor.submit(() -> {
+                    start.await();
+                    return buffer.put(stored.id(), metadata(), OWNER, 0L, content(content));
+                }));
+            }
+            start.countDown();
+        }
+
+        // Then
+        int accepted = 0;
+        int conflicts = 0;
+        for (Future<Note> put : puts) {
+            try {
+                assertEquals(1L, put.get().version());
+                accepted++;
+            } catch (ExecutionException e) {
+                assertInstanceOf(ConflictException.class, e.getCause());
+                conflicts++;
+            }
+        }
+        assertEquals(1, accepted);
+        assertEquals(1, conflicts);
+    }
+
+    @Test
+    @DisplayName("Should drop a buffered update when another writer changed the note first")
+    void flush_afterWriteElsewhere_shouldDropUpdate() {
+        // Given
+        buffer.put(stored.id(), metadata(), OWNER, 0L, content("buffered"));
+        mongoTemplate.updateFirst(new Query(where("_id").is(stored.id())), new Update().inc("version", 1), Note.class);
+
+        // When
+        buffer.flush();
+
+        // Then
+        Note current = mongoTemplate.findById(stored.id(), Note.class);
+        assertEquals("original", current.content());
+        assertEquals(1L, current.version());
+        assertNull(buffer.pending(stored.id()));
+    }
+
+    @Test
+    @DisplayName("Should not overwrite a note that became PRIVATE after the update was buffered")
+    void flush_afterSwitchToPrivate_shouldDropUpdate() {
+        // Given
+        buffer.put(stored.id(), metadata(), "someone-else", null, content("vandalised"));
+        mongoTemplate.updateFirst(new Query(where("_id").is(stored.id())), new Update().set("encryptionMode", PRIVATE), Note.class);
+
+        // When
+        buffer.flush();
+
+        // Then
+        Note current = mongoTemplate.findById(stored.id(), Note.class);
+        assertEquals(PRIVATE, current.encryptionMode());
+        assertNull(buffer.pending(stored.id()));
+    }
+
+    @Test
+    @DisplayName("Should base the first buffered update on the stored note, not on stale cached metadata")
+    void update_withStaleCachedMetadata_shouldWriteOnFlush() {
+        // Given
+        NoteService service = staleService();
+
+        // When
+        Note accepted = service.update(stored.id(), "buffered", null, null, null);
+        buffer.flush();
+
+        // Then
+        Note current = mongoTemplate.findById(stored.id(), Note.class);
+        assertEquals("buffered", current.content());
+        assertEquals(2L, current.version());
+        assertEquals(accepted.version(), current.version());
+        assertNull(buffer.pending(stored.id()));
+    }
+
+    @Test
+    @DisplayName("Should reject an update expecting the version still in the stale cached metadata")
+    void update_withStaleCachedMetadataAndExpectedVersion_shouldConflict() {
+        // Given
+        NoteService service = staleService();
+
+        // When
+        ConflictException exception = assertThrows(ConflictException.class,
+                () -> service.update(stored.id(), "buffered", null, null, 0L));
+
+        // Then
+        assertEquals(1L, exception.current().version());
+        assertNull(buffer.pending(stored.id()));
+    }
+
+    /**
+     * Caches the metadata of the stored note, then has another writer advance its version.
+     */
+    private NoteService staleService() {
+        cacheManager.getCache(METADATA).put(stored.id(), metadata());
+        mongoTemplate.updateFirst(new Query(where("_id").is(stored.id())), new Update().inc("version", 1), Note.class);
+        UserContextHolder.set(new UserContext(OWNER, OWNER, List.of("USER")));
+        return new NoteService(repository, cacheManager, idFilter, buffer);
+    }
+
+    private NoteMetadata metadata() {
+        return NoteMetadata.from(stored);
+    }
+
+    private static Function<NoteMetadata, Note> content(String content) {
+        return base -> new Note(base.id(), content, base.createdBy(), base.createdAt(), Instant.now(), base.encryptionMode(), null);
+    }
+}
@@ -0,0 +1,54 @@
+package com.lhamacorp.knotes.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    @DisplayName("Should never report an added value as absent, even after growing")
+    void mightContain_afterGrowth_shouldHaveNoFalseNegatives() {
+        // Given
+        BloomFilter filter = new BloomFilter(100, 0.01);
+
+        // When
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("note-" + i);
+        }
+
+        // Then
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("note-" + i));
+        }
+        assertEquals(10_000, filter.size());
+    }
+
+    @Test
+    @DisplayName("Should keep the false positive rate near the configured one")
+    void mightContain_unknownValues_shouldRarelyMatch() {
+        // Given
+        BloomFilter filter = new BloomFilter(1_000, 0.01);
+        for (int i = 0; i < 20_000; i++) {
+            filter.add("note-" + i);
+        }
+
+        // When
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("probe-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        // Then
+        assertTrue(falsePositives < 2_000, "false positive rate too high: " + falsePositives);
+    }
+
+    @Test
+    @DisplayName("Should reject an invalid false positive rate")
+    void constructor_invalidRate_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 1.5));
+    }
+}
@@ -0,0 +1,86 @@
+package com.lhamacorp.knotes.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+
+import static com.lhamacorp.knotes.util.CircuitBreaker.State.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    @Test
+    @DisplayName("Should open after consecutive failures and reject calls while open")
+    void onFailure_atThreshold_shouldOpen() {
+        // Given
+        CircuitBreaker breaker = new CircuitBreaker(3, Duration.ofMinutes(1), Clock.systemUTC());
+
+        // When
+        breaker.onFailure();
+        breaker.onFailure();
+        boolean beforeThreshold = breaker.tryAcquire();
+        breaker.onFailure();
+
+        // Then
+        assertTrue(beforeThreshold);
+        assertEquals(OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+        assertNotNull(breaker.openedAt());
+    }
+
+    @Test
+    @DisplayName("Should reset the failure count on success")
+    void onSuccess_shouldResetFailures() {
+        // Given
+        CircuitBreaker breaker = new CircuitBreaker(2, Duration.ofMinutes(1), Clock.systemUTC());
+        breaker.onFailure();
+
+        // When
+        breaker.onSuccess();
+        breaker.onFailure();
+
+        // Then
+        assertEquals(CLOSED, breaker.state());
+        assertEquals(1, breaker.failures());
+    }
+
+    @Test
+    @DisplayName("Should let a single probe through once the open period is over")
+    void tryAcquire_afterOpenPeriod_shouldAllowOneProbe() {
+        // Given
+        CircuitBreaker breaker = new CircuitBreaker(1, Duration.ZERO, Clock.systemUTC());
+        breaker.onFailure();
+
+        // When
+        boolean probe = breaker.tryAcquire();
+        boolean concurrent = breaker.tryAcquire();
+
+        // Then
+        assertTrue(probe);
+        assertFalse(concurrent);
+        assertEquals(HALF_OPEN, breaker.state());
+    }
+
+    @Test
+    @DisplayName("Should close on a successful probe and reopen on a failed one")
+    void probeOutcome_shouldCloseOrReopen() {
+        // Given
+        CircuitBreaker succeeding = new CircuitBreaker(1, Duration.ZERO, Clock.systemUTC());
+        CircuitBreaker failing = new CircuitBreaker(1, Duration.ZERO, Clock.systemUTC());
+        succeeding.onFailure();
+        succeeding.tryAcquire();
+        failing.onFailure();
+        failing.tryAcquire();
+
+        // When
+        succeeding.onSuccess();
+        failing.onFailure();
+
+        // Then
+        assertEquals(CLOSED, succeeding.state());
+        assertNull(succeeding.openedAt());
+        assertEquals(OPEN, failing.state());
+    }
+}
@@ -1,11 +1,32 @@
 package com.lhamacorp.knotes.util;
 
+import com.lhamacorp.knotes.util.codec.CodecContext;
+import com.lhamacorp.knotes.util.codec.CompressionCodec;
+import com.lhamacorp.knotes.util.codec.CompressionCodecs;
+import com.lhamacorp.knotes.util.codec.CompressionDictionaries;
+import com.lhamacorp.knotes.util.codec.DictionaryTrainer;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class CompressionUtilsTest {
 
+    // production bundles no dictionary yet, so the dictionary tests load a fixture explicitly
+    private static final CompressionCodec DICTIONARY =
+            CompressionCodecs.dictionary(CompressionDictionaries.load("/compression/fixtures/v%d.dict"));
+
     @Test
     void compressAndDecompress_shouldReturnOriginalText() {
         // Given
@@ -60,6 +81,210 @@ class CompressionUtilsTest {
         assertEquals("", result);
     }
 
+    @Test
+    void isGzip_withCompressedContent_shouldReturnTrue() {
+        // When
+        byte[] compressed = CompressionUtils.compress("Some content to serve as gzip", CompressionCodecs.GZIP);
+
+        // Then
+        assertTrue(CompressionUtils.isGzip(compressed));
+    }
+
+    @Test
+    void isGzip_withNonGzipInput_shouldReturnFalse() {
+        // Then
+        assertFalse(CompressionUtils.isGzip(null));
+        assertFalse(CompressionUtils.isGzip(new byte[0]));
+        assertFalse(CompressionUtils.isGzip("plain text content".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void compressAndDecompress_withEveryCodec_shouldReturnOriginalText() {
+        // Given
+        String originalText = "Codec round trip with unicode: áéíóú çãõ ñ. ".repeat(20);
+
+        for (CompressionCodec codec : List.of(CompressionCodecs.GZIP, CompressionCodecs.DEFLATE,
+                CompressionCodecs.FAST, CompressionCodecs.STORED)) {
+            // When
+            byte[] compressed = CompressionUtils.compress(originalText, codec);
+
+            // Then
+            assertEquals(codec, CompressionUtils.codecOf(compressed), "Payload should identify " + codec.name());
+            assertEquals(originalText, CompressionUtils.decompress(compressed), "Round trip failed for " + codec.name());
+        }
+    }
+
+    @Test
+    void compress_withTaggedCodec_shouldWriteCodecTag() {
+        // When
+        byte[] compressed = CompressionUtils.compress("Tagged payload content", CompressionCodecs.DEFLATE);
+
+        // Then
+        assertEquals(CompressionCodecs.DEFLATE.tag(), compressed[0]);
+        assertFalse(CompressionUtils.isGzip(compressed));
+    }
+
+    @Test
+    void compress_smallContent_shouldStayServableAsGzip() {
+        // When
+        byte[] compressed = CompressionUtils.compress("Small public note");
+
+        // Then
+        assertTrue(CompressionUtils.isGzip(compressed));
+    }
+
+    @Test
+    void compressForEncryption_withoutBundledDictionary_shouldUseDefaultCodec() {
+        // Given
+        String smallNote = "Small private note";
+
+        // When
+        byte[] compressed = CompressionUtils.compressForEncryption(smallNote);
+
+        // Then
+        assertEquals(CompressionCodecs.GZIP, CompressionUtils.codecOf(compressed));
+        assertEquals(smallNote, CompressionUtils.decompress(compressed));
+    }
+
+    @Test
+    void compressSmall_withDictionary_shouldRoundTripAndBeatGzip() {
+        // Given
+        String smallNote = "Meeting notes - [ ] follow up with the team about the project deadline tomorrow";
+
+        // When
+        byte[] compressed = CompressionUtils.compressSmall(smallNote, DICTIONARY);
+        byte[] gzip = CompressionUtils.compress(smallNote, CompressionCodecs.GZIP);
+
+        // Then
+        assertEquals(DICTIONARY.tag(), compressed[0]);
+        assertEquals(smallNote, decompress(compressed));
+        assertTrue(compressed.length < gzip.length, "Dictionary payload should be smaller than GZIP");
+    }
+
+    @Test
+    void compressSmall_tinyIncompressibleContent_shouldNotGrowBeyondStored() {
+        // Given
+        String tinyNote = "x7Qz";
+
+        // When
+        byte[] compressed = CompressionUtils.compressSmall(tinyNote, DICTIONARY);
+
+        // Then
+        assertEquals(tinyNote, decompress(compressed));
+        assertTrue(compressed.length <= tinyNote.length() + 2, "Tiny content should not grow beyond its stored size");
+    }
+
+    @Test
+    void compressSmall_largeContent_shouldUseDefaultCodec() {
+        // Given
+        String largeNote = "Large note content. ".repeat(100);
+
+        // When
+        byte[] compressed = CompressionUtils.compressSmall(largeNote, DICTIONARY);
+
+        // Then
+        assertEquals(CompressionCodecs.GZIP, CompressionUtils.codecOf(compressed));
+    }
+
+    @Test
+    void train_shouldKeepSegmentsSharedAcrossSamples() {
+        // Given
+        List<String> samples = List.of(
+                "Shopping list: milk, eggs, bread and coffee",
+                "Shopping list: rice, eggs, bread and apples",
+                "Shopping list: milk, cheese, bread and coffee");
+
+        // When
+        byte[] dictionary = DictionaryTrainer.train(samples, 1024);
+
+        // Then
+        String dictionaryText = new String(dictionary, StandardCharsets.UTF_8);
+        assertTrue(dictionary.length > 0 && dictionary.length <= 1024);
+        assertTrue(dictionaryText.contains("Shopping list: "));
+    }
+
+    @Test
+    void decompress_withLegacyUntaggedGzip_shouldReturnOriginalText() throws IOException {
+        // Given - payload written by the original GZIPOutputStream implementation
+        String originalText = "Legacy content stored before codecs were introduced";
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(baos)) {
+            gzip.write(originalText.getBytes(StandardCharsets.UTF_8));
+        }
+
+        // When
+        String decompressed = CompressionUtils.decompress(baos.toByteArray());
+
+        // Then
+        assertEquals(originalText, decompressed);
+    }
+
+    @Test
+    void decompress_withUnknownCodecTag_shouldThrow() {
+        // Then
+        assertThrows(RuntimeException.class, () -> CompressionUtils.decompress(new byte[]{(byte) 0x7f, 1, 2}));
+    }
+
+    @Test
+    void compressAndDecompress_concurrentlyOnVirtualThreads_shouldNotShareCodecState() throws Exception {
+        // Given
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Boolean>> results = new java.util.ArrayList<>();
+
+            for (int i = 0; i < 500; i++) {
+                String text = ("Concurrent note " + i + " ").repeat(i % 50 + 1);
+                results.add(executor.submit(() -> text.equals(CompressionUtils.decompress(CompressionUtils.compress(text)))));
+            }
+
+            // Then
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        }
+    }
+
+    @Test
+    void codecContext_closedAgainAfterReuse_shouldNotReleaseNextOwner() {
+        // Given
+        byte[] payload = CompressionUtils.compress("Pooled context content", CompressionCodecs.GZIP);
+        CodecContext stale = CodecContext.acquire();
+        stale.close();
+
+        try (CodecContext owner = CodecContext.acquire()) {
+            // When
+            stale.close();
+
+            // Then
+            try (CodecContext other = CodecContext.acquire()) {
+                ByteBuffer decoded = CompressionCodecs.GZIP.decompress(payload, owner);
+                CompressionCodecs.GZIP.decompress(CompressionUtils.compress("Other content", CompressionCodecs.GZIP), other);
+                assertEquals("Pooled context content", StandardCharsets.UTF_8.decode(decoded).toString());
+            }
+            assertThrows(IllegalStateException.class, () -> CompressionCodecs.GZIP.compress("closed", stale));
+        }
+    }
+
+    @Test
+    void compress_withNonAsciiContent_shouldCountInputInUtf8Bytes() {
+        // Given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Metrics.addRegistry(registry);
+        String text = "áéíóú çãõ ñ";
+
+        try {
+            // When
+            byte[] compressed = CompressionUtils.compress(text, CompressionCodecs.STORED);
+
+            // Then
+            assertEquals(text.getBytes(StandardCharsets.UTF_8).length,
+                    registry.get("knotes.compression.input.bytes").tag("codec", "STORED").counter().count());
+            assertEquals(compressed.length,
+                    registry.get("knotes.compression.output.bytes").tag("codec", "STORED").counter().count());
+        } finally {
+            Metrics.removeRegistry(registry);
+        }
+    }
+
     @Test
     void getCompressionRatio_shouldCalculateCorrectly() {
         // Given
@@ -221,4 +446,18 @@ class CompressionUtilsTest {
         System.out.println("Compression ratio: " + String.format("%.2f%%",
             CompressionUtils.getCompressionRatio(mixedContent.getBytes().length, compressed.length) * 100));
     }
-}
\ No newline at end of file
+
+    /**
+     * Decodes payloads of the fixture dictionary, which {@link CompressionUtils#decompress} does not know.
+     */
+    private static String decompress(byte[] compressed) {
+        if (compressed[0] != DICTIONARY.tag()) {
+            return CompressionUtils.decompress(compressed);
+        }
+
+        try (CodecContext context = CodecContext.acquire()) {
+            ByteBuffer bytes = DICTIONARY.decompress(compressed, context);
+            return new String(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -79,6 +79,45 @@ class EncryptionUtilsTest {
         assertArrayEquals(key1, key2);
     }
 
+    @Test
+    @DisplayName("Should serve repeated key derivations from the derived-key cache")
+    void testOwnerKeyServedFromCache() {
+        // Given
+        byte[] salt = EncryptionUtils.generateSalt();
+        byte[] key1 = EncryptionUtils.deriveOwnerKey(TEST_USER_ID, salt);
+        long hitsBefore = DerivedKeyCache.cache().stats().hitCount();
+
+        // When
+        byte[] key2 = EncryptionUtils.deriveOwnerKey(TEST_USER_ID, salt);
+
+        // Then
+        assertArrayEquals(key1, key2);
+        assertNotSame(key1, key2);
+        assertEquals(hitsBefore + 1, DerivedKeyCache.cache().stats().hitCount());
+
+        // Mutating a returned key must not affect the cached entry
+        java.util.Arrays.fill(key2, (byte) 0);
+        assertArrayEquals(key1, EncryptionUtils.deriveOwnerKey(TEST_USER_ID, salt));
+    }
+
+    @Test
+    @DisplayName("Should keep handed out keys intact when the cached entry is evicted and zeroed")
+    void testOwnerKeySurvivesEviction() {
+        // Given
+        byte[] salt = EncryptionUtils.generateSalt();
+        byte[] key1 = EncryptionUtils.deriveOwnerKey(TEST_USER_ID, salt);
+        byte[] expected = key1.clone();
+
+        // When
+        DerivedKeyCache.clear();
+        DerivedKeyCache.cache().cleanUp();
+        byte[] key2 = EncryptionUtils.deriveOwnerKey(TEST_USER_ID, salt);
+
+        // Then
+        assertArrayEquals(expected, key1);
+        assertArrayEquals(expected, key2);
+    }
+
     @Test
     @DisplayName("Should derive different keys for different user IDs")
     void testOwnerKeyUserSpecific() {
@@ -0,0 +1,161 @@
+package com.lhamacorp.knotes.util.codec;
+
+import com.lhamacorp.knotes.util.CompressionUtils;
+import com.mongodb.ConnectionString;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.bson.Document;
+import org.bson.types.Binary;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Offline trainer for preset compression dictionaries.
+ *
+ * <p>Counts how many sample notes contain each run of one to {@value #MAX_TOKENS_PER_SEGMENT}
+ * consecutive tokens, scores each run by the bytes it could save across the sample, and
+ * packs the best runs into a dictionary. The highest-scoring runs are placed at the end,
+ * where Deflate back-references are shortest.</p>
+ *
+ * <p>Usage: {@code ./gradlew trainDictionary --args="<samples> <output file> [max size]"}, where
+ * the samples are either a directory holding one note per file or a MongoDB connection string,
+ * from which a random sample of non-empty PUBLIC notes is read and decompressed. The output is
+ * published as the next {@code /compression/dictionaries/vN.dict} resource. Lives with the tests
+ * so it never ships with the application.</p>
+ */
+public final class DictionaryTrainer {
+
+    private static final int MAX_TOKENS_PER_SEGMENT = 4;
+    private static final int MIN_SEGMENT_LENGTH = 4;
+    private static final int MIN_DOCUMENT_FREQUENCY = 2;
+    private static final Pattern TOKEN = Pattern.compile("\\S+\\s*|\\s+");
+    private static final int MONGO_SAMPLE_SIZE = 10_000;
+
+    private DictionaryTrainer() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: DictionaryTrainer <samples directory | mongodb uri> <output file> [max size]");
+            System.exit(1);
+        }
+
+        int maxSize = args.length > 2 ? Integer.parseInt(args[2]) : CompressionDictionaries.MAX_DICTIONARY_SIZE;
+
+        List<String> samples = args[0].startsWith("mongodb") ? fromMongo(args[0]) : fromDirectory(Path.of(args[0]));
+
+        byte[] dictionary = train(samples, maxSize);
+        Files.write(Path.of(args[1]), dictionary);
+        System.out.printf("Trained %d byte dictionary from %d samples%n", dictionary.length, samples.size());
+    }
+
+    private static List<String> fromDirectory(Path directory) throws IOException {
+        List<String> samples = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                samples.add(Files.readString(file, StandardCharsets.UTF_8));
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Reads PUBLIC notes only: the others are encrypted, and their content must not end up in
+     * a dictionary that ships with the application.
+     */
+    private static List<String> fromMongo(String uri) {
+        ConnectionString connection = new ConnectionString(uri);
+        String database = connection.getDatabase() != null ? connection.getDatabase() : "knotes";
+
+        List<Document> pipeline = List.of(
+                new Document("$match", new Document("encryptionMode", "PUBLIC")
+                        .append("content", new Document("$ne", new Binary(new byte[0])))),
+                new Document("$sample", new Document("size", MONGO_SAMPLE_SIZE)),
+                new Document("$project", new Document("content", 1)));
+
+        List<String> samples = new ArrayList<>();
+        try (MongoClient client = MongoClients.create(connection)) {
+            for (Document note : client.getDatabase(database).getCollection("notes").aggregate(pipeline)) {
+                samples.add(CompressionUtils.decompress(note.get("content", Binary.class).getData()));
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Builds a dictionary of at most {@code maxSize} bytes from the given samples.
+     */
+    public static byte[] train(Iterable<String> samples, int maxSize) {
+        if (maxSize <= 0 || maxSize > CompressionDictionaries.MAX_DICTIONARY_SIZE) {
+            throw new IllegalArgumentException("Dictionary size must be 1 to " + CompressionDictionaries.MAX_DICTIONARY_SIZE + " bytes");
+        }
+
+        Map<String, Integer> documentFrequency = new HashMap<>();
+        for (String sample : samples) {
+            for (String segment : segments(sample)) {
+                documentFrequency.merge(segment, 1, Integer::sum);
+            }
+        }
+
+        List<Map.Entry<String, Integer>> candidates = documentFrequency.entrySet().stream()
+                .filter(entry -> entry.getValue() >= MIN_DOCUMENT_FREQUENCY)
+                .sorted(Comparator.comparingLong(DictionaryTrainer::score).reversed())
+                .toList();
+
+        List<String> selected = new ArrayList<>();
+        int size = 0;
+        for (Map.Entry<String, Integer> candidate : candidates) {
+            String segment = candidate.getKey();
+            int length = segment.getBytes(StandardCharsets.UTF_8).length;
+            if (size + length > maxSize || selected.stream().anyMatch(existing -> existing.contains(segment))) {
+                continue;
+            }
+            selected.add(segment);
+            size += length;
+        }
+
+        // best segments last: they end up closest to the data and get the cheapest back-references
+        StringBuilder dictionary = new StringBuilder(size);
+        for (int i = selected.size() - 1; i >= 0; i--) {
+            dictionary.append(selected.get(i));
+        }
+        return dictionary.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Set<String> segments(String sample) {
+        List<String> tokens = new ArrayList<>();
+        Matcher matcher = TOKEN.matcher(sample);
+        while (matcher.find()) {
+            tokens.add(matcher.group());
+        }
+
+        Set<String> segments = new HashSet<>();
+        for (int start = 0; start < tokens.size(); start++) {
+            StringBuilder segment = new StringBuilder();
+            for (int end = start; end < Math.min(tokens.size(), start + MAX_TOKENS_PER_SEGMENT); end++) {
+                segment.append(tokens.get(end));
+                if (segment.length() >= MIN_SEGMENT_LENGTH) {
+                    segments.add(segment.toString());
+                }
+            }
+        }
+        return segments;
+    }
+
+    private static long score(Map.Entry<String, Integer> candidate) {
+        return (long) candidate.getValue() * (candidate.getKey().length() - MIN_SEGMENT_LENGTH + 1);
+    }
+}